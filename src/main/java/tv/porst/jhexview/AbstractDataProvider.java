@@ -0,0 +1,114 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Base class for data providers that implements management of
+ * {@link IDataChangedListener data change listeners} and merging of
+ * notifications inside {@link #beginUpdate() batches of changes}.
+ * <p>
+ * Listeners can be added, removed and notified from any thread. Listeners are
+ * called on the thread, that changes data, so Swing components must move
+ * handling of notifications onto the event dispatch thread.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public abstract class AbstractDataProvider implements IDataProvider
+{
+  private final CopyOnWriteArrayList<IDataChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+  /** Guards state of batches of changes. */
+  private final Object updateLock = new Object();
+  /** Count of not finished {@link #beginUpdate() batches of changes}. */
+  private int updateDepth;
+  /** Start of the range, changed inside current batch, inclusive. */
+  private long changedStart = Long.MAX_VALUE;
+  /** End of the range, changed inside current batch, exclusive. */
+  private long changedEnd = Long.MIN_VALUE;
+
+  @Override
+  public void addListener(final IDataChangedListener listener)
+  {
+    if (listener != null) {
+      listeners.addIfAbsent(listener);
+    }
+  }
+
+  @Override
+  public void removeListener(IDataChangedListener listener)
+  {
+    if (listener != null) {
+      listeners.remove(listener);
+    }
+  }
+
+  @Override
+  public void beginUpdate()
+  {
+    synchronized (updateLock) {
+      ++updateDepth;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException If there is no started batch
+   */
+  @Override
+  public void endUpdate()
+  {
+    final long offset;
+    final long length;
+    synchronized (updateLock) {
+      if (updateDepth == 0) {
+        throw new IllegalStateException("endUpdate() called without beginUpdate()");
+      }
+      if (--updateDepth > 0 || changedStart >= changedEnd) {
+        return;
+      }
+      offset = changedStart;
+      length = changedEnd == Long.MAX_VALUE ? -1 : changedEnd - changedStart;
+      changedStart = Long.MAX_VALUE;
+      changedEnd = Long.MIN_VALUE;
+    }
+    fireDataChangedListener(offset, length);
+  }
+
+  /**
+   * Notifies all registered listeners that all content of the provider has been changed.
+   */
+  protected void fireDataChangedListener()
+  {
+    fireDataChangedListener(0, -1);
+  }
+
+  /**
+   * Notifies all registered listeners that the range of content of the provider
+   * has been changed.
+   *
+   * @param offset Offset of the first changed byte
+   * @param length Count of changed bytes or a negative value, if all data,
+   *        starting from {@code offset}, has been changed
+   */
+  protected void fireDataChangedListener(long offset, long length)
+  {
+    synchronized (updateLock) {
+      if (updateDepth > 0) {
+        // Merge with other changes of the current batch
+        changedStart = Math.min(changedStart, offset);
+        changedEnd = Math.max(changedEnd, length < 0 ? Long.MAX_VALUE : offset + length);
+        return;
+      }
+    }
+    if (!listeners.isEmpty()) {
+      DataChangedEvent event = new DataChangedEvent(this, offset, length);
+      for (final IDataChangedListener l: listeners) {
+        l.dataChanged(event);
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Data provider that caches data of an {@link IAsyncDataProvider asynchronous
+ * provider}. Requests of missing data are passed to the wrapped provider, data
+ * is cached, when the wrapped provider reports it as available.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class AsyncCachingDataProvider extends CachingDataProvider implements IAsyncDataProvider
+{
+  /** The provider, which data is cached. */
+  private final IAsyncDataProvider m_asyncSource;
+
+  /**
+   * Creates cache with default page size and count of pages.
+   *
+   * @param source The provider, which data must be cached
+   *
+   * @throws NullPointerException If {@code source} is {@code null}
+   */
+  public AsyncCachingDataProvider(IAsyncDataProvider source)
+  {
+    this(source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+  }
+
+  /**
+   * Creates cache with specified page size and count of pages, that evicts
+   * the least recently used pages.
+   *
+   * @param source The provider, which data must be cached
+   * @param pageSize Size of each cached page in bytes, must be positive
+   * @param maxPages Maximum count of cached pages, must be positive
+   *
+   * @throws NullPointerException If {@code source} is {@code null}
+   * @throws IllegalArgumentException If {@code pageSize} or {@code maxPages}
+   *         is not positive
+   */
+  public AsyncCachingDataProvider(IAsyncDataProvider source, int pageSize, int maxPages)
+  {
+    this(source, pageSize, maxPages, EvictionPolicy.LRU);
+  }
+
+  /**
+   * Creates cache with specified page size, count of pages and eviction policy.
+   *
+   * @param source The provider, which data must be cached
+   * @param pageSize Size of each cached page in bytes, must be positive
+   * @param maxPages Maximum count of cached pages, must be positive
+   * @param policy Policy of choosing a page for eviction
+   *
+   * @throws NullPointerException If {@code source} or {@code policy} is {@code null}
+   * @throws IllegalArgumentException If {@code pageSize} or {@code maxPages}
+   *         is not positive
+   */
+  public AsyncCachingDataProvider(IAsyncDataProvider source, int pageSize, int maxPages, EvictionPolicy policy)
+  {
+    super(source, pageSize, maxPages, policy);
+    m_asyncSource = source;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Cached data is not requested again. When the wrapped provider loads data,
+   * pages of the requested segment, read while it was loading, are invalidated,
+   * so the next read caches the loaded data.
+   */
+  @Override
+  public CompletableFuture<Void> fetch(final long offset, final int length)
+  {
+    if (isCached(offset, length)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return m_asyncSource.fetch(offset, length).thenRun(() -> invalidate(offset, length));
+  }
+}
@@ -0,0 +1,194 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Matcher, that searches for an exact sequence of bytes by the Boyer-Moore
+ * algorithm. Optionally matcher ignores case of ASCII letters. Backward search
+ * uses the mirrored algorithm: pattern is compared from the first byte, and
+ * jump tables are built for the reversed pattern.
+ * <p>
+ * Based on reference implementation from
+ *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+final class BoyerMooreMatcher extends Matcher
+{
+  /** Table, that maps each byte to itself. */
+  private static final byte[] IDENTITY = new byte[256];
+  /** Table, that maps ASCII upper-case letters to lower-case and other bytes to itself. */
+  private static final byte[] LOWER_CASE = new byte[256];
+  static {
+    for (int i = 0; i < 256; ++i) {
+      IDENTITY[i] = (byte)i;
+      LOWER_CASE[i] = (byte)(i >= 'A' && i <= 'Z' ? i - 'A' + 'a' : i);
+    }
+  }
+
+  /** Pattern, normalized by {@link #m_fold}. */
+  private final byte[] m_pattern;
+  /** Normalization of bytes of data before comparison. */
+  private final byte[] m_fold;
+  /** Jump table based on the mismatched byte. */
+  private final int[] m_byteTable;
+  /** Jump table based on the scan offset which mismatch occurs. */
+  private final int[] m_offsetTable;
+  /** Jump table based on the mismatched byte for backward search. */
+  private final int[] m_reverseByteTable;
+  /** Jump table based on the scan offset which mismatch occurs for backward search. */
+  private final int[] m_reverseOffsetTable;
+
+  /**
+   * Creates matcher for the specified pattern.
+   *
+   * @param pattern The pattern to search, must not be empty. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters match letters in any case
+   *
+   * @throws IllegalArgumentException If {@code pattern} is empty
+   */
+  BoyerMooreMatcher(byte[] pattern, boolean caseSensitive)
+  {
+    if (pattern.length == 0) {
+      throw new IllegalArgumentException("Pattern for search must not be empty");
+    }
+    m_fold = caseSensitive ? IDENTITY : LOWER_CASE;
+    m_pattern = new byte[pattern.length];
+    for (int i = 0; i < pattern.length; ++i) {
+      m_pattern[i] = m_fold[pattern[i] & 0xFF];
+    }
+    m_byteTable = makeByteTable(m_pattern);
+    m_offsetTable = makeOffsetTable(m_pattern);
+    final byte[] reversed = new byte[m_pattern.length];
+    for (int i = 0; i < reversed.length; ++i) {
+      reversed[i] = m_pattern[reversed.length - 1 - i];
+    }
+    m_reverseByteTable = makeByteTable(reversed);
+    m_reverseOffsetTable = makeOffsetTable(reversed);
+  }
+
+  @Override
+  int length() { return m_pattern.length; }
+
+  @Override
+  byte[] literal() { return m_pattern; }
+
+  @Override
+  int find(byte[] buffer, int from, int to)
+  {
+    final byte[] pattern = m_pattern;
+    final byte[] fold = m_fold;
+    final int[] byteTable = m_byteTable;
+    final int last = pattern.length - 1;
+    final byte lastByte = pattern[last];
+    for (int off = from + last; off < to;) {
+      // Fast skip by the last byte of pattern, which is the most frequent case
+      byte b = fold[buffer[off] & 0xFF];
+      if (b != lastByte) {
+        off += byteTable[b & 0xFF];
+        continue;
+      }
+      int pos = off;
+      int j = last;
+      do {
+        if (j == 0) {
+          return pos;
+        }
+        --pos;
+        --j;
+      } while (pattern[j] == (b = fold[buffer[pos] & 0xFF]));
+      off = pos + Math.max(m_offsetTable[last - j], byteTable[b & 0xFF]);
+    }
+    return -1;
+  }
+
+  @Override
+  int findLast(byte[] buffer, int from, int to)
+  {
+    final byte[] pattern = m_pattern;
+    final byte[] fold = m_fold;
+    final int[] byteTable = m_reverseByteTable;
+    final int last = pattern.length - 1;
+    final byte firstByte = pattern[0];
+    for (int off = to - pattern.length; off >= from;) {
+      // Fast skip by the first byte of pattern, which is the most frequent case
+      byte b = fold[buffer[off] & 0xFF];
+      if (b != firstByte) {
+        off -= byteTable[b & 0xFF];
+        continue;
+      }
+      int pos = off;
+      int j = 0;
+      do {
+        if (j == last) {
+          return pos - last;
+        }
+        ++pos;
+        ++j;
+      } while (pattern[j] == (b = fold[buffer[pos] & 0xFF]));
+      off = pos - Math.max(m_reverseOffsetTable[j], byteTable[b & 0xFF]);
+    }
+    return -1;
+  }
+
+  /**
+   * Makes the jump table based on the mismatched byte information.
+   */
+  private static int[] makeByteTable(byte[] pattern)
+  {
+    final int[] table = new int[256];
+    for (int i = 0; i < table.length; i++) {
+      table[i] = pattern.length;
+    }
+    for (int i = 0; i < pattern.length - 1; i++) {
+      table[pattern[i] & 255] = pattern.length - 1 - i;
+    }
+    return table;
+  }
+
+  /**
+   * Makes the jump table based on the scan offset which mismatch occurs.
+   */
+  private static int[] makeOffsetTable(byte[] pattern)
+  {
+    final int[] table = new int[pattern.length];
+    int lastPrefixPos = pattern.length;
+    for (int i = pattern.length - 1; i >= 0; i--) {
+      if (isPrefix(pattern, i + 1)) {
+        lastPrefixPos = i + 1;
+      }
+      table[pattern.length - 1 - i] = lastPrefixPos - i + pattern.length - 1;
+    }
+    for (int i = 0; i < pattern.length - 1; i++) {
+      final int slen = suffixLength(pattern, i);
+      table[slen] = pattern.length - 1 - i + slen;
+    }
+    return table;
+  }
+
+  /**
+   * Is pattern[p:end] a prefix of pattern?
+   */
+  private static boolean isPrefix(byte[] pattern, int p)
+  {
+    for (int i = p, j = 0; i < pattern.length; i++, j++) {
+      if (pattern[i] != pattern[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the maximum length of the subpattern ends at p and is a suffix.
+   */
+  private static int suffixLength(byte[] pattern, int p)
+  {
+    int len = 0;
+    for (int i = p, j = pattern.length - 1; i >= 0 && pattern[i] == pattern[j]; i--, j--) {
+      len += 1;
+    }
+    return len;
+  }
+}
@@ -0,0 +1,123 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Data provider that provides data to the hex view component from a
+ * {@link ByteBuffer}. Use this data provider for buffers, that are allocated
+ * outside of the Java heap, for example, by native code, to avoid copying of
+ * data into an array.
+ * <p>
+ * Provider contains bytes of the buffer between its position and limit at
+ * time of provider creation. Subsequent changes of position and limit of the
+ * buffer do not affect the provider, changes of content are visible immediately,
+ * but listeners are notified only about changes made by {@link #setData}.
+ * Provider is editable, if the buffer is not {@link ByteBuffer#isReadOnly() read-only}.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class ByteBufferDataProvider extends AbstractDataProvider
+{
+  /**
+   * Independent view of the buffer, used for all reads and writes. Its position
+   * is changed on each access, so access is synchronized.
+   */
+  private final ByteBuffer m_data;
+
+  /**
+   * Creates provider for the remaining bytes of the specified buffer.
+   *
+   * @param data Buffer with data
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   */
+  public ByteBufferDataProvider(ByteBuffer data)
+  {
+    if (data == null) {
+      throw new NullPointerException("Buffer with data can't be null");
+    }
+    m_data = data.slice();
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    if (offset + length > getDataLength()) {
+      length = getDataLength() - (int)offset;
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    getData(offset, result, 0, length);
+    return result;
+  }
+
+  @Override
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    if (offset + length > getDataLength()) {
+      length = getDataLength() - (int)offset;
+    }
+    if (length <= 0) {
+      return 0;
+    }
+    synchronized (m_data) {
+      m_data.position((int)offset);
+      m_data.get(buffer, bufferOffset, length);
+    }
+    return length;
+  }
+
+  @Override
+  public int getDataLength()
+  {
+    return m_data.capacity();
+  }
+
+  @Override
+  public boolean hasData(long offset, int length)
+  {
+    return true;
+  }
+
+  /** @return {@code true}, if the buffer is not read-only */
+  @Override
+  public boolean isEditable()
+  {
+    return !m_data.isReadOnly();
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Data beyond the end of the buffer is ignored.
+   *
+   * @throws java.nio.ReadOnlyBufferException If the buffer is read-only
+   */
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    int length = data.length;
+    final int len = getDataLength() - (int)offset;
+    if (length > len) {
+      length = len;
+    }
+    if (length > 0) {
+      synchronized (m_data) {
+        m_data.position((int)offset);
+        m_data.put(data, 0, length);
+      }
+      fireDataChangedListener(offset, length);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of bytes for search, in which some bits can have any value. Each
+ * byte of pattern has a value and a mask: a byte of data matches, if its bits,
+ * selected by the mask, are equal to the corresponding bits of the value.
+ * Usually masks select whole bytes, halves of bytes (nibbles) or nothing, that
+ * is written as {@code E8 ?? ?? ?? ?? 48 8B ?5}, see {@link #parse(String)}.
+ * <p>
+ * Patterns are immutable.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class BytePattern
+{
+  /** Values of bytes, bits outside of masks are cleared. */
+  private final byte[] m_values;
+  /** Masks of significant bits of bytes. */
+  private final byte[] m_masks;
+
+  /**
+   * Creates pattern from values and masks of bytes.
+   *
+   * @param values Values of bytes. Bits outside of masks are ignored
+   * @param masks Masks of bytes: set bits must be equal to bits of values,
+   *        cleared bits can have any value
+   *
+   * @throws NullPointerException If {@code values} or {@code masks} is {@code null}
+   * @throws IllegalArgumentException If arrays are empty or have different lengths
+   */
+  public BytePattern(byte[] values, byte[] masks)
+  {
+    if (values.length != masks.length) {
+      throw new IllegalArgumentException("Count of values (" + values.length
+        + ") differs from count of masks (" + masks.length + ")");
+    }
+    if (values.length == 0) {
+      throw new IllegalArgumentException("Pattern for search must not be empty");
+    }
+    m_masks = masks.clone();
+    m_values = new byte[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      m_values[i] = (byte)(values[i] & masks[i]);
+    }
+  }
+
+  /**
+   * Creates pattern, that matches exactly the specified bytes.
+   *
+   * @param values Bytes to match
+   *
+   * @return The pattern
+   *
+   * @throws IllegalArgumentException If {@code values} is empty
+   */
+  public static BytePattern exact(byte[] values)
+  {
+    final byte[] masks = new byte[values.length];
+    Arrays.fill(masks, (byte)0xFF);
+    return new BytePattern(values, masks);
+  }
+
+  /**
+   * Parses pattern from hex string. Each byte is written by two characters:
+   * hex digits or {@code ?} for nibbles with any value. Whitespace between
+   * bytes is ignored, so {@code "E8 ?? 4?"}, {@code "e8??4?"} are the same pattern.
+   *
+   * @param pattern String representation of pattern
+   *
+   * @return The parsed pattern
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   * @throws IllegalArgumentException If string contains other characters, has
+   *         odd count of nibbles or is empty
+   */
+  public static BytePattern parse(String pattern)
+  {
+    final byte[] values = new byte[pattern.length() / 2];
+    final byte[] masks  = new byte[values.length];
+    int nibbles = 0;
+    for (int i = 0; i < pattern.length(); ++i) {
+      final char ch = pattern.charAt(i);
+      if (Character.isWhitespace(ch)) {
+        if (nibbles % 2 != 0) {
+          throw new IllegalArgumentException("Byte at position " + i + " of pattern '" + pattern + "' has only one nibble");
+        }
+        continue;
+      }
+      int value = 0;
+      int mask  = 0;
+      if (ch != '?') {
+        value = Character.digit(ch, 16);
+        if (value < 0) {
+          throw new IllegalArgumentException("Invalid character '" + ch + "' at position " + i + " of pattern '" + pattern + "'");
+        }
+        mask = 0xF;
+      }
+      final int index = nibbles / 2;
+      final int shift = nibbles % 2 == 0 ? 4 : 0;
+      values[index] |= value << shift;
+      masks[index]  |= mask  << shift;
+      ++nibbles;
+    }
+    if (nibbles % 2 != 0) {
+      throw new IllegalArgumentException("Last byte of pattern '" + pattern + "' has only one nibble");
+    }
+    return new BytePattern(Arrays.copyOf(values, nibbles / 2), Arrays.copyOf(masks, nibbles / 2));
+  }
+
+  /**
+   * Returns length of pattern.
+   *
+   * @return Count of bytes in pattern
+   */
+  public int length() { return m_values.length; }
+
+  /**
+   * Returns value of byte of pattern. Bits outside of mask are cleared.
+   *
+   * @param index Index of byte
+   *
+   * @return Value of byte
+   */
+  public byte getValue(int index) { return m_values[index]; }
+
+  /**
+   * Returns mask of significant bits of byte of pattern.
+   *
+   * @param index Index of byte
+   *
+   * @return Mask of byte
+   */
+  public byte getMask(int index) { return m_masks[index]; }
+
+  /**
+   * Returns whether pattern matches data at the specified position of the buffer.
+   *
+   * @param buffer Buffer with data
+   * @param offset Index of the first byte of data, the whole pattern must fit into buffer
+   *
+   * @return {@code true}, if data matches the pattern
+   */
+  public boolean matches(byte[] buffer, int offset)
+  {
+    for (int i = 0; i < m_values.length; ++i) {
+      if ((buffer[offset + i] & m_masks[i]) != m_values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof BytePattern)) {
+      return false;
+    }
+    final BytePattern other = (BytePattern)obj;
+    return Arrays.equals(m_values, other.m_values) && Arrays.equals(m_masks, other.m_masks);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * Arrays.hashCode(m_values) + Arrays.hashCode(m_masks);
+  }
+
+  /**
+   * Returns string representation of pattern in format, accepted by {@link #parse},
+   * if masks select whole nibbles. Other nibbles are written as {@code [value/mask]}
+   * in binary.
+   *
+   * @return Bytes, separated by spaces, for example, {@code E8 ?? 4?}
+   */
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder(3 * m_values.length);
+    for (int i = 0; i < m_values.length; ++i) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      appendNibble(sb, m_values[i] >> 4, m_masks[i] >> 4);
+      appendNibble(sb, m_values[i], m_masks[i]);
+    }
+    return sb.toString();
+  }
+
+  private static void appendNibble(StringBuilder sb, int value, int mask)
+  {
+    if ((mask & 0xF) == 0) {
+      sb.append('?');
+    } else
+    if ((mask & 0xF) == 0xF) {
+      sb.append(Character.toUpperCase(Character.forDigit(value & 0xF, 16)));
+    } else {
+      // Mask of individual bits can not be represented by one character
+      sb.append('[').append(Integer.toBinaryString(0x10 | value & mask & 0xF).substring(1))
+        .append('/').append(Integer.toBinaryString(0x10 | mask & 0xF).substring(1)).append(']');
+    }
+  }
+}
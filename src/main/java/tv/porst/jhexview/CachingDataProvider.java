@@ -0,0 +1,452 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data provider that caches data of another provider. Data is cached by pages
+ * of fixed size, limited count of pages is kept in memory. Which page is evicted
+ * when the cache is full, is determined by {@link EvictionPolicy}.
+ * Use this provider to wrap providers, that read data from slow sources, so
+ * repeated paints of {@link JHexView} will not reach the wrapped provider.
+ * <p>
+ * Cached pages are invalidated when wrapped provider notifies about data changes.
+ * If the notification contains range of changed data, only pages in that range
+ * are invalidated.
+ * Writes, insertions, removals and batches of changes are passed to the
+ * wrapped provider.
+ * <p>
+ * Only data, that the wrapped provider {@link IDataProvider#hasData reports}
+ * as available, is cached, other data is read through on each request. Use
+ * {@link AsyncCachingDataProvider} to cache data of {@link IAsyncDataProvider
+ * asynchronous providers}, so missing data can be requested through the cache.
+ * <p>
+ * Provider is thread-safe, if wrapped provider is thread-safe. Wrapped provider
+ * is read without holding the lock of the cache, so slow reads in one thread
+ * do not block access to already cached pages from other threads.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public class CachingDataProvider extends AbstractDataProvider
+{
+  /** Default size of cached page in bytes. */
+  public static final int DEFAULT_PAGE_SIZE = 4096;
+  /** Default maximum count of cached pages. */
+  public static final int DEFAULT_MAX_PAGES = 1024;
+
+  /** Policies of choosing a page that will be evicted when the cache is full. */
+  public enum EvictionPolicy {
+    /**
+     * Evicts the least recently used page. Suitable for random access and
+     * repeated paints of the same area.
+     */
+    LRU,
+    /**
+     * Evicts the page that was loaded earlier than others, regardless of how
+     * often it was used. Suitable for sequential scans, where frequently used
+     * pages must not be kept in the cache forever.
+     */
+    FIFO
+  }
+
+  /** The provider, which data is cached. */
+  private final IDataProvider m_source;
+  /** Size of each cached page in bytes. */
+  private final int m_pageSize;
+  /** Policy of page eviction. */
+  private final EvictionPolicy m_policy;
+  /**
+   * Cached pages, keyed by page index. For {@link EvictionPolicy#LRU} map keeps
+   * access order, so eldest entry is the least recently used page, for
+   * {@link EvictionPolicy#FIFO} it keeps insertion order.
+   */
+  private final LinkedHashMap<Long, byte[]> m_pages;
+  /**
+   * Pages, that are read from the wrapped provider now, keyed by page index.
+   * Each load is identified by an unique token. Invalidation of the page removes
+   * its token, so the data, read before invalidation, is not cached.
+   */
+  private final HashMap<Long, Object> m_loading = new HashMap<>();
+  /** Array of the evicted page, which will be reused for the next loaded page. */
+  private byte[] m_freePage;
+
+  /** Count of page requests that were satisfied from the cache. */
+  private long m_hits;
+  /** Count of page requests that required reading from the wrapped provider. */
+  private long m_misses;
+
+  /** Listener that invalidates cache when wrapped provider changes. */
+  private final InternalListener m_listener = new InternalListener();
+
+  /**
+   * Creates cache with default page size and count of pages.
+   *
+   * @param source The provider, which data must be cached
+   *
+   * @throws NullPointerException If {@code source} is {@code null}
+   */
+  public CachingDataProvider(IDataProvider source)
+  {
+    this(source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+  }
+
+  /**
+   * Creates cache with specified page size and count of pages, that evicts
+   * the least recently used pages.
+   *
+   * @param source The provider, which data must be cached
+   * @param pageSize Size of each cached page in bytes, must be positive
+   * @param maxPages Maximum count of cached pages, must be positive. When
+   *        this count is exceeded, the least recently used page is evicted
+   *
+   * @throws NullPointerException If {@code source} is {@code null}
+   * @throws IllegalArgumentException If {@code pageSize} or {@code maxPages}
+   *         is not positive
+   */
+  public CachingDataProvider(IDataProvider source, int pageSize, int maxPages)
+  {
+    this(source, pageSize, maxPages, EvictionPolicy.LRU);
+  }
+
+  /**
+   * Creates cache with specified page size, count of pages and eviction policy.
+   *
+   * @param source The provider, which data must be cached
+   * @param pageSize Size of each cached page in bytes, must be positive
+   * @param maxPages Maximum count of cached pages, must be positive. When
+   *        this count is exceeded, a page, chosen by {@code policy}, is evicted
+   * @param policy Policy of choosing a page for eviction
+   *
+   * @throws NullPointerException If {@code source} or {@code policy} is {@code null}
+   * @throws IllegalArgumentException If {@code pageSize} or {@code maxPages}
+   *         is not positive
+   */
+  public CachingDataProvider(IDataProvider source, int pageSize, final int maxPages, EvictionPolicy policy)
+  {
+    if (source == null) {
+      throw new NullPointerException("Cached data provider can't be null");
+    }
+    if (policy == null) {
+      throw new NullPointerException("Eviction policy can't be null");
+    }
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+    }
+    if (maxPages <= 0) {
+      throw new IllegalArgumentException("Count of cached pages must be positive: " + maxPages);
+    }
+    m_source = source;
+    m_pageSize = pageSize;
+    m_policy = policy;
+    m_pages = new LinkedHashMap<Long, byte[]>(maxPages + 1, 1.0f, policy == EvictionPolicy.LRU) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest)
+      {
+        if (size() > maxPages) {
+          m_freePage = eldest.getValue();
+          return true;
+        }
+        return false;
+      }
+    };
+    source.addListener(m_listener);
+  }
+
+  /**
+   * Returns the provider, which data is cached.
+   *
+   * @return The wrapped provider, never {@code null}
+   */
+  public IDataProvider getSource() { return m_source; }
+
+  /**
+   * Returns the policy of choosing a page for eviction when the cache is full.
+   *
+   * @return Eviction policy, never {@code null}
+   */
+  public EvictionPolicy getEvictionPolicy() { return m_policy; }
+
+  /**
+   * Returns the number of page requests that were satisfied from the cache.
+   *
+   * @return Count of cache hits since creation or last {@link #resetStatistics()}
+   */
+  public synchronized long getHitCount() { return m_hits; }
+
+  /**
+   * Returns the number of page requests that required reading from the wrapped provider.
+   *
+   * @return Count of cache misses since creation or last {@link #resetStatistics()}
+   */
+  public synchronized long getMissCount() { return m_misses; }
+
+  /** Resets {@link #getHitCount() hit} and {@link #getMissCount() miss} counters. */
+  public synchronized void resetStatistics()
+  {
+    m_hits = 0;
+    m_misses = 0;
+  }
+
+  /** Removes all cached pages. */
+  public synchronized void invalidate()
+  {
+    m_pages.clear();
+    m_loading.clear();
+  }
+
+  /**
+   * Removes from the cache all pages, that overlap with specified range.
+   *
+   * @param offset The start offset of the range
+   * @param length The length of the range in bytes
+   */
+  public synchronized void invalidate(long offset, long length)
+  {
+    final long first = offset / m_pageSize;
+    final long last  = (offset + length - 1) / m_pageSize;
+    if (last - first >= m_pages.size() + m_loading.size()) {
+      // Range is bigger than the cache, so check each cached page
+      m_pages.keySet().removeIf(i -> i >= first && i <= last);
+      m_loading.keySet().removeIf(i -> i >= first && i <= last);
+      return;
+    }
+    for (long i = first; i <= last; ++i) {
+      m_pages.remove(i);
+      m_loading.remove(i);
+    }
+  }
+
+  /**
+   * Unsubscribes from notifications of the wrapped provider and removes all
+   * cached pages. Call this method when the cache is no longer needed, but
+   * the wrapped provider still used.
+   */
+  public void dispose()
+  {
+    m_source.removeListener(m_listener);
+    invalidate();
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    final long rest = getDataLengthLong() - offset;
+    if (length > rest) {
+      length = (int)rest;
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    getData(offset, result, 0, length);
+    return result;
+  }
+
+  @Override
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    final long rest = getDataLengthLong() - offset;
+    if (length > rest) {
+      length = (int)rest;
+    }
+    int pos = 0;
+    while (pos < length) {
+      final long current = offset + pos;
+      final int start = (int)(current % m_pageSize);
+      final int count = Math.min(length - pos, m_pageSize - start);
+
+      readPage(current / m_pageSize, start, buffer, bufferOffset + pos, count);
+      pos += count;
+    }
+    return Math.max(length, 0);
+  }
+
+  @Override
+  public int getDataLength()
+  {
+    return m_source.getDataLength();
+  }
+
+  @Override
+  public long getDataLengthLong()
+  {
+    return m_source.getDataLengthLong();
+  }
+
+  @Override
+  public boolean hasData(long offset, int length)
+  {
+    return isCached(offset, length) || m_source.hasData(offset, length);
+  }
+
+  @Override
+  public boolean isEditable()
+  {
+    return m_source.isEditable();
+  }
+
+  @Override
+  public boolean isEditable(long offset, int length)
+  {
+    return m_source.isEditable(offset, length);
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return m_source.keepTrying();
+  }
+
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    m_source.setData(offset, data);
+    // Notification can be delayed until the end of the batch, so changed
+    // pages are invalidated here
+    invalidate(offset, data.length);
+  }
+
+  @Override
+  public void beginUpdate()
+  {
+    m_source.beginUpdate();
+  }
+
+  @Override
+  public void endUpdate()
+  {
+    m_source.endUpdate();
+  }
+
+  @Override
+  public boolean isResizable()
+  {
+    return m_source.isResizable();
+  }
+
+  @Override
+  public void insertData(long offset, byte[] data)
+  {
+    m_source.insertData(offset, data);
+    invalidate(offset, Long.MAX_VALUE - offset);
+  }
+
+  @Override
+  public void insertData(long offset, IDataProvider source, long sourceOffset, long length)
+  {
+    // Own data is inserted directly from the wrapped provider, so it can
+    // refer to it without copying
+    m_source.insertData(offset, source == this ? m_source : source, sourceOffset, length);
+    invalidate(offset, Long.MAX_VALUE - offset);
+  }
+
+  @Override
+  public void removeData(long offset, long length)
+  {
+    m_source.removeData(offset, length);
+    invalidate(offset, Long.MAX_VALUE - offset);
+  }
+
+  /**
+   * Returns whether all pages, that overlap with specified range, are cached.
+   *
+   * @param offset The start offset of the range
+   * @param length The length of the range in bytes
+   *
+   * @return {@code true}, if data of the range can be read without reading
+   *         of the wrapped provider
+   */
+  synchronized boolean isCached(long offset, int length)
+  {
+    final long first = offset / m_pageSize;
+    final long last  = (offset + length - 1) / m_pageSize;
+    for (long i = first; i <= last; ++i) {
+      if (!m_pages.containsKey(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copies part of the page with the specified index into the buffer, loading
+   * the page if necessary. The page is read from the wrapped provider without
+   * holding the lock and is cached only if the wrapped provider has its data.
+   * If the page is loading by another thread, requested part is read through.
+   *
+   * @param index Index of page
+   * @param start Offset of the first copied byte in the page
+   * @param buffer Buffer for data
+   * @param bufferOffset Offset in the buffer for the first copied byte
+   * @param count Count of bytes to copy
+   */
+  private void readPage(long index, int start, byte[] buffer, int bufferOffset, int count)
+  {
+    final Long key = Long.valueOf(index);
+    final Object token = new Object();
+    byte[] page;
+    synchronized (this) {
+      page = m_pages.get(key);
+      if (page != null) {
+        ++m_hits;
+        System.arraycopy(page, start, buffer, bufferOffset, count);
+        return;
+      }
+      ++m_misses;
+      if (m_loading.putIfAbsent(key, token) != null) {
+        page = null;
+      } else
+      if (m_freePage != null) {
+        page = m_freePage;
+        m_freePage = null;
+      } else {
+        page = new byte[m_pageSize];
+      }
+    }
+    if (page == null) {
+      m_source.getData(index * m_pageSize + start, buffer, bufferOffset, count);
+      return;
+    }
+    boolean available = false;
+    try {
+      final long pageStart = index * m_pageSize;
+      final int size = (int)Math.min(m_pageSize, getDataLengthLong() - pageStart);
+      available = m_source.hasData(pageStart, size);
+      m_source.getData(pageStart, page, 0, size);
+      System.arraycopy(page, start, buffer, bufferOffset, count);
+    } finally {
+      synchronized (this) {
+        // Page, invalidated while it was read, can contain outdated data
+        if (m_loading.get(key) == token) {
+          m_loading.remove(key);
+        } else {
+          available = false;
+        }
+        if (available) {
+          m_pages.put(key, page);
+        } else {
+          m_freePage = page;
+        }
+      }
+    }
+  }
+
+  /**
+   * Listener is moved into an internal class to avoid publishing the
+   * listener methods in the public interface of the provider.
+   */
+  private class InternalListener implements IDataChangedListener
+  {
+    @Override
+    public void dataChanged(DataChangedEvent event)
+    {
+      // For unbounded events all pages from the offset are invalidated
+      invalidate(event.getOffset(), event.getLength());
+      fireDataChangedListener(event.getOffset(), event.isUnbounded() ? -1 : event.getLength());
+    }
+  }
+}
@@ -2,44 +2,322 @@
 
 package tv.porst.jhexview;
 
+import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 
 public final class ColoredRangeManager
 {
+  /**
+   * Ranges, sorted by start offset. Ranges with equal starts are kept in order of addition.
+   * Ranges from {@link #shiftIndex} are stored with starts, less than actual
+   * starts by {@link #shiftDelta}, so insertion or removing of data moves them
+   * without creating new ranges.
+   */
   private final ArrayList<ColoredRange> ranges = new ArrayList<ColoredRange>();
+  /** Index of the first range, which stored start differs from the actual start. */
+  private int shiftIndex;
+  /** Difference between actual and stored starts of ranges from {@link #shiftIndex}. */
+  private long shiftDelta;
+  /**
+   * Maximal end offset of ranges from the first range up to range with the
+   * same index. Array is monotonic, so ranges that can contain an offset are
+   * found by binary search even if ranges overlap. Only first {@link #maxCount}
+   * elements are valid, the rest are calculated on demand.
+   */
+  private long[] maxEnds = new long[0];
+  /** Count of valid elements of {@link #maxEnds}. */
+  private int maxCount;
 
   public void addRange(ColoredRange range)
   {
-    ranges.add(range);
+    final int index = upperBound(range.getStart());
+    moveShift(index);
+    ranges.add(index, range);
+    shiftIndex = index + 1;
+    invalidate(index);
+  }
+
+  /**
+   * Adds ranges of the same size and colors, that start at the specified
+   * offsets. Ranges are sorted once, so adding of many ranges takes
+   * {@code O(n log n)} time.
+   *
+   * @param offsets Start offsets of ranges in any order
+   * @param size The number of bytes in each range
+   * @param fcolor The text color of ranges
+   * @param bgcolor The background color of ranges
+   *
+   * @since 2.2
+   */
+  public void addRanges(long[] offsets, int size, Color fcolor, Color bgcolor)
+  {
+    moveShift(ranges.size());
+    ranges.ensureCapacity(ranges.size() + offsets.length);
+    for (final long offset : offsets) {
+      ranges.add(new ColoredRange(offset, size, fcolor, bgcolor));
+    }
     Collections.sort(ranges);
+    shiftIndex = ranges.size();
+    invalidate(0);
   }
 
   public void clear()
   {
     ranges.clear();
+    shiftIndex = 0;
+    shiftDelta = 0;
+    invalidate(0);
   }
 
   public ColoredRange findRange(long offset)
   {
-    for (final ColoredRange range : ranges) {
-      if (range.getStart() >= offset) {
-        return range;
+    final int index = lowerBound(offset);
+    return index < ranges.size() ? range(index) : null;
+  }
+
+  public ColoredRange findRangeWith(long offset)
+  {
+    // Only ranges, that start at or before the offset, can contain it
+    final int count = upperBound(offset);
+    computeMaxEnds(count);
+    // The first range, before which all ranges end at or before the offset
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (maxEnds[middle] <= offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    for (int i = low; i < count; ++i) {
+      if (offset < start(i) + ranges.get(i).getSize()) {
+        return range(i);
       }
     }
 
     return null;
   }
 
-  public ColoredRange findRangeWith(long offset)
+  /**
+   * Returns actual start offset of the range with the specified index.
+   */
+  private long start(int index)
+  {
+    final long start = ranges.get(index).getStart();
+    return index < shiftIndex ? start : start + shiftDelta;
+  }
+
+  /**
+   * Returns the range with the specified index, moving it to the actual offset, if necessary.
+   */
+  private ColoredRange range(int index)
   {
-    for (final ColoredRange range : ranges) {
-      if (range.containsOffset(offset)) {
-        return range;
+    if (index >= shiftIndex && shiftDelta != 0) {
+      moveShift(index + 1);
+    }
+    return ranges.get(index);
+  }
+
+  /**
+   * Moves ranges before the specified index to their actual offsets and
+   * ranges after it to offsets, relative to {@link #shiftDelta}. Takes time
+   * proportional to the count of ranges between the old and the new index.
+   *
+   * @param index New value of {@link #shiftIndex}
+   */
+  private void moveShift(int index)
+  {
+    if (shiftDelta != 0) {
+      for (int i = shiftIndex; i < index; ++i) {
+        ranges.set(i, moved(ranges.get(i), shiftDelta));
+      }
+      for (int i = index; i < shiftIndex; ++i) {
+        ranges.set(i, moved(ranges.get(i), -shiftDelta));
       }
     }
+    shiftIndex = index;
+    if (index == ranges.size()) {
+      shiftDelta = 0;
+    }
+  }
 
-    return null;
+  private static ColoredRange moved(ColoredRange range, long delta)
+  {
+    return new ColoredRange(range.getStart() + delta, range.getSize(), range.getColor(), range.getBackgroundColor());
+  }
+
+  /**
+   * Marks maximal end offsets from the specified index as outdated.
+   */
+  private void invalidate(int index)
+  {
+    maxCount = Math.min(maxCount, index);
+  }
+
+  /**
+   * Calculates maximal end offsets of the specified count of first ranges.
+   */
+  private void computeMaxEnds(int count)
+  {
+    if (maxEnds.length < count) {
+      maxEnds = Arrays.copyOf(maxEnds, ranges.size());
+    }
+    long max = maxCount > 0 ? maxEnds[maxCount - 1] : Long.MIN_VALUE;
+    for (int i = maxCount; i < count; ++i) {
+      max = Math.max(max, start(i) + ranges.get(i).getSize());
+      maxEnds[i] = max;
+    }
+    maxCount = Math.max(maxCount, count);
+  }
+
+  /**
+   * Returns index of the first range, that starts at or after the offset.
+   */
+  private int lowerBound(long offset)
+  {
+    int low = 0;
+    int high = ranges.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (start(middle) < offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns index of the first range, that starts after the offset.
+   */
+  private int upperBound(long offset)
+  {
+    int low = 0;
+    int high = ranges.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (start(middle) <= offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Moves ranges after insertion or removing of bytes. Ranges after the
+   * {@code offset} are moved, range that contains the {@code offset} is
+   * expanded on insertion. Removed bytes are removed from ranges, ranges
+   * that become empty are removed.
+   * <p>
+   * Ranges after the removed bytes are moved lazily, so repeated insertion
+   * or removing at near offsets, for example, typing, takes {@code O(log n)}
+   * time plus time, proportional to count of ranges near the offset.
+   *
+   * @param offset Offset at which bytes are inserted or removed
+   * @param delta Count of inserted bytes, if positive, or count of removed
+   *        bytes, if negative
+   *
+   * @since 2.2
+   */
+  void shift(long offset, long delta)
+  {
+    if (delta == 0 || ranges.isEmpty()) {
+      return;
+    }
+    final int first = lowerBound(offset);
+    // Ranges, that start before the offset, are changed only if they reach it:
+    // on insertion range, that ends at the offset, is expanded too
+    final long reach = delta > 0 ? offset - 1 : offset;
+    computeMaxEnds(first);
+    int changed = 0;
+    int high = first;
+    while (changed < high) {
+      final int middle = (changed + high) >>> 1;
+      if (maxEnds[middle] <= reach) {
+        changed = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    final int end = delta > 0 ? first : lowerBound(offset - delta);
+    moveShift(end);
+    for (int i = changed; i < first; ++i) {
+      final ColoredRange range = ranges.get(i);
+      final long rangeEnd = range.getStart() + range.getSize();
+      if (rangeEnd > reach) {
+        ranges.set(i, resized(range, range.getStart(), shift(rangeEnd, offset, delta)));
+      }
+    }
+    // Ranges, that start in the removed region, now start at the offset
+    int kept = first;
+    for (int i = first; i < end; ++i) {
+      final ColoredRange range = ranges.get(i);
+      final long rangeEnd = shift(range.getStart() + range.getSize(), offset, delta);
+      if (offset < rangeEnd) {
+        ranges.set(kept++, resized(range, offset, rangeEnd));
+      }
+    }
+    ranges.subList(kept, end).clear();
+    shiftIndex = kept;
+    shiftDelta += delta;
+    if (shiftIndex == ranges.size()) {
+      shiftDelta = 0;
+    }
+    invalidate(changed);
+  }
+
+  private static ColoredRange resized(ColoredRange range, long start, long end)
+  {
+    return new ColoredRange(start, (int)Math.min(end - start, Integer.MAX_VALUE),
+        range.getColor(), range.getBackgroundColor());
+  }
+
+  /**
+   * Calculates new value of range boundary after insertion or removing of bytes.
+   *
+   * @param position Boundary to move
+   * @param offset Offset at which bytes are inserted or removed
+   * @param delta Count of inserted bytes, if positive, or count of removed
+   *        bytes, if negative
+   *
+   * @return New position of boundary
+   */
+  private static long shift(long position, long offset, long delta)
+  {
+    if (position < offset) {
+      return position;
+    }
+    if (delta > 0) {
+      return position + delta;
+    }
+    // Boundaries inside removed region are moved to its start
+    return Math.max(offset, position + delta);
+  }
+
+  /**
+   * Removes the range from the list.
+   *
+   * @param range Range to remove, previously returned by {@link #range(int)}
+   */
+  private void remove(ColoredRange range)
+  {
+    for (int i = lowerBound(range.getStart()); i < ranges.size(); ++i) {
+      if (ranges.get(i) == range) {
+        ranges.remove(i);
+        if (i < shiftIndex) {
+          --shiftIndex;
+        }
+        invalidate(i);
+        return;
+      }
+    }
   }
 
   public void removeRange(long offset, int size)
@@ -67,14 +345,14 @@ public final class ColoredRangeManager
         // If the sizes are equal the entire range is decolorized and
         // we're done.
 
-        ranges.remove(range);
+        remove(range);
       }
       else if (range.getSize() < size) {
         // If the range is smaller the entire range is decolorized and
         // the
         // remaining bytes are decolorized in the next step.
 
-        ranges.remove(range);
+        remove(range);
         removeRange(range.getStart() + range.getSize(), size - range.getSize());
       }
       else
@@ -84,7 +362,7 @@ public final class ColoredRangeManager
         // range and add a new range that contains the area that stays
         // colorized.
 
-        ranges.remove(range);
+        remove(range);
         addRange(new ColoredRange(offset + size, range.getSize() - size, range.getColor(),
             range.getBackgroundColor()));
       }
@@ -99,7 +377,7 @@ public final class ColoredRangeManager
         // then the latter part of the range is ditched. Get rid of the range
         // and create a new range that represents the first part of the area.
 
-        ranges.remove(range);
+        remove(range);
 
         final long newStart = range.getStart();
         final int newSize = range.getSize() - size;
@@ -112,7 +390,7 @@ public final class ColoredRangeManager
         // and create two new ranges for the first part and last part of the old
         // range.
 
-        ranges.remove(range);
+        remove(range);
 
         final long newStartFirst = range.getStart();
         final int newSizeFirst = (int) (offset - range.getStart());
@@ -133,7 +411,7 @@ public final class ColoredRangeManager
         // the entire range
         // except for the start is ditched.
 
-        ranges.remove(range);
+        remove(range);
 
         final long newStart = range.getStart();
         final int newSize = (int) (offset - range.getStart());
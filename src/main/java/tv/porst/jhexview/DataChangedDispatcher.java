@@ -0,0 +1,153 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Listener, that moves notifications about changes of data onto the event
+ * dispatch thread and forwards them to the target listener. Providers can be
+ * changed from any thread, for example, from a thread, that captures data,
+ * while the target listener is called only on the EDT.
+ * <p>
+ * Notifications, received from other threads, are not forwarded immediately.
+ * Instead, their ranges are merged and forwarded as one event at most once per
+ * {@link #getDelay() frame interval}, so a burst of thousands of small changes
+ * causes only one repaint. Notifications, received on the EDT when there are no
+ * pending notifications, are forwarded immediately.
+ * <p>
+ * Dispatcher is intended for listening of one provider at a time. When the
+ * listened provider changes, pending notifications must be dropped by {@link #clear()}.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class DataChangedDispatcher implements IDataChangedListener
+{
+  /** Default interval between forwarded notifications in milliseconds, about 60 frames per second. */
+  public static final int DEFAULT_DELAY = 16;
+
+  /** Listener, that receives notifications on the EDT. */
+  private final IDataChangedListener m_target;
+  /** Timer, that forwards merged notifications on the EDT. */
+  private final Timer m_timer;
+
+  /** Source of pending notifications or {@code null}, if there are no pending notifications. */
+  private Object m_source;
+  /** Start of the range, changed by pending notifications, inclusive. */
+  private long m_start;
+  /** End of the range, changed by pending notifications, exclusive. */
+  private long m_end;
+
+  /**
+   * Creates dispatcher with the {@link #DEFAULT_DELAY default} frame interval.
+   *
+   * @param target Listener, that will receive notifications on the EDT
+   *
+   * @throws NullPointerException If {@code target} is {@code null}
+   */
+  public DataChangedDispatcher(IDataChangedListener target)
+  {
+    this(target, DEFAULT_DELAY);
+  }
+
+  /**
+   * Creates dispatcher with the specified frame interval.
+   *
+   * @param target Listener, that will receive notifications on the EDT
+   * @param delay Minimal interval between forwarded notifications in milliseconds
+   *
+   * @throws NullPointerException If {@code target} is {@code null}
+   * @throws IllegalArgumentException If {@code delay} is negative
+   */
+  public DataChangedDispatcher(IDataChangedListener target, int delay)
+  {
+    if (target == null) {
+      throw new NullPointerException("Target listener can't be null");
+    }
+    if (delay < 0) {
+      throw new IllegalArgumentException("Delay must not be negative: " + delay);
+    }
+    m_target = target;
+    m_timer = new Timer(delay, new ActionListener()
+    {
+      @Override
+      public void actionPerformed(ActionEvent e)
+      {
+        flush();
+      }
+    });
+    m_timer.setRepeats(false);
+  }
+
+  /**
+   * Returns interval between forwarded notifications.
+   *
+   * @return Interval in milliseconds
+   */
+  public int getDelay() { return m_timer.getInitialDelay(); }
+
+  @Override
+  public void dataChanged(DataChangedEvent event)
+  {
+    final boolean onEdt = SwingUtilities.isEventDispatchThread();
+    synchronized (this) {
+      if (m_source != null) {
+        // Merge with pending notifications, so order of changes is preserved
+        m_start = Math.min(m_start, event.getOffset());
+        m_end = Math.max(m_end, event.getOffset() + event.getLength());
+        return;
+      }
+      if (!onEdt) {
+        m_source = event.getSource();
+        m_start = event.getOffset();
+        m_end = event.getOffset() + event.getLength();
+      }
+    }
+    if (onEdt) {
+      m_target.dataChanged(event);
+      return;
+    }
+    SwingUtilities.invokeLater(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        m_timer.restart();
+      }
+    });
+  }
+
+  /**
+   * Forwards pending notifications to the target listener immediately, if
+   * there are any. Must be called on the EDT.
+   */
+  public void flush()
+  {
+    final DataChangedEvent event;
+    synchronized (this) {
+      if (m_source == null) {
+        return;
+      }
+      final long length = m_end == Long.MAX_VALUE ? -1 : m_end - m_start;
+      event = new DataChangedEvent(m_source, m_start, length);
+      m_source = null;
+    }
+    m_timer.stop();
+    m_target.dataChanged(event);
+  }
+
+  /**
+   * Drops pending notifications without forwarding them.
+   */
+  public void clear()
+  {
+    synchronized (this) {
+      m_source = null;
+    }
+    m_timer.stop();
+  }
+}
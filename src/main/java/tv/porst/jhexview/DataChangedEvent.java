@@ -7,14 +7,80 @@ import java.util.EventObject;
 /**
  * A basic event implementation that indicates that the content of a IDataProvider object
  * has been modified.
+ * <p>
+ * Since 2.2 event contains range of changed data. Events, created by the
+ * {@link #DataChangedEvent(Object) old constructor}, mark all data as changed.
  *
  * @author argent77
  */
 public class DataChangedEvent extends EventObject
 {
+  /** Offset of the first changed byte. */
+  private final long offset;
+  /** Count of changed bytes. */
+  private final long length;
+
+  /**
+   * Creates event that marks all data as changed.
+   *
+   * @param source The provider which data has been changed
+   */
   public DataChangedEvent(Object source)
+  {
+    this(source, 0, -1);
+  }
+
+  /**
+   * Creates event that marks the range of data as changed.
+   *
+   * @param source The provider which data has been changed
+   * @param offset Offset of the first changed byte
+   * @param length Count of changed bytes or a negative value, if all data,
+   *        starting from {@code offset}, has been changed, for example, when
+   *        data was inserted or removed
+   *
+   * @since 2.2
+   */
+  public DataChangedEvent(Object source, long offset, long length)
   {
     super(source);
+    this.offset = offset;
+    this.length = length < 0 ? Long.MAX_VALUE - offset : length;
   }
 
+  /**
+   * Returns offset of the first changed byte.
+   *
+   * @return Offset of the first changed byte
+   *
+   * @since 2.2
+   */
+  public long getOffset() { return offset; }
+
+  /**
+   * Returns count of changed bytes. If all data, starting from {@link #getOffset()},
+   * has been changed, returns {@code Long.MAX_VALUE - getOffset()}, so the
+   * end of changed range never overflows.
+   *
+   * @return Count of changed bytes
+   *
+   * @since 2.2
+   */
+  public long getLength() { return length; }
+
+  /**
+   * Returns whether all data, starting from {@link #getOffset()}, has been
+   * changed. Length of data could also be changed in that case.
+   *
+   * @return {@code true}, if the changed range is not limited
+   *
+   * @since 2.2
+   */
+  public boolean isUnbounded() { return offset + length == Long.MAX_VALUE; }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getName() + "[offset=" + offset + ", length=" + length + ", source=" + source + "]";
+  }
 }
@@ -0,0 +1,195 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads data ahead of the visible area of {@link JHexView} in the background,
+ * so it will be already available, when the view is scrolled. Prefetcher
+ * tracks direction and speed of scrolling and reads more screens, when view
+ * is scrolled faster.
+ * <p>
+ * Data is read by one background thread. Count of queued requests is bounded,
+ * the oldest requests are discarded, when new arrive. Data from
+ * {@link IAsyncDataProvider asynchronous providers} is {@link IAsyncDataProvider#fetch
+ * requested}, data from other providers is read into a scratch buffer, which
+ * fills caches of providers like {@link CachingDataProvider} or {@link MappedFileDataProvider}.
+ * <p>
+ * All methods, except background reading, must be called from the EDT.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+final class DataPrefetcher
+{
+  /** Size of chunks in which data is read. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+  /** Maximum count of queued prefetch requests. */
+  private static final int QUEUE_CAPACITY = 4;
+  /** Time in seconds for which the data is read ahead at the current scrolling speed. */
+  private static final double LOOKAHEAD_SECONDS = 0.5;
+  /** Maximum multiplier for count of prefetched screens at high scrolling speed. */
+  private static final int MAX_SPEEDUP = 4;
+
+  private final ThreadPoolExecutor m_executor;
+  /** Scratch buffer for reading data. Used only by the background thread. */
+  private final byte[] m_buffer = new byte[CHUNK_SIZE];
+  /** Increments, when the provider changes, so requests for the old provider are dropped. */
+  private final AtomicLong m_generation = new AtomicLong();
+
+  /** The first visible row on the previous notification or -1. */
+  private long m_lastRow = -1;
+  /** Time of the previous notification in nanoseconds. */
+  private long m_lastTime;
+  /** Smoothed scrolling speed in rows per second. */
+  private double m_rowsPerSecond;
+  /** Direction of the last movement: 1 - down, -1 - up. */
+  private int m_direction = 1;
+
+  /** Range of bytes, that was requested last time: {@code [m_requestedStart; m_requestedEnd)}. */
+  private long m_requestedStart;
+  private long m_requestedEnd;
+
+  DataPrefetcher()
+  {
+    m_executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+      r -> {
+        final Thread thread = new Thread(r, "JHexView prefetcher");
+        thread.setDaemon(true);
+        return thread;
+      },
+      new ThreadPoolExecutor.DiscardOldestPolicy()
+    );
+    m_executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Forgets all collected statistics and drops queued requests. Must be
+   * called, when the data provider changes.
+   */
+  void reset()
+  {
+    m_generation.incrementAndGet();
+    m_executor.getQueue().clear();
+    m_lastRow = -1;
+    m_rowsPerSecond = 0;
+    m_direction = 1;
+    m_requestedStart = m_requestedEnd = 0;
+  }
+
+  /**
+   * Hints about direction of the next scrolling, based on the caret movement.
+   *
+   * @param delta Count of nibbles by which the caret moved
+   */
+  void caretMoved(long delta)
+  {
+    if (delta != 0) {
+      m_direction = delta > 0 ? 1 : -1;
+    }
+  }
+
+  /**
+   * Notifies prefetcher that the view shows new rows and requests data ahead
+   * of them in the direction of scrolling.
+   *
+   * @param provider Provider which data is shown
+   * @param firstRow The first visible row
+   * @param visibleRows Count of visible rows
+   * @param bytesPerRow Count of bytes in one row
+   * @param screens Count of screens to read ahead at slow scrolling
+   */
+  void viewChanged(IDataProvider provider, long firstRow, int visibleRows, int bytesPerRow, int screens)
+  {
+    final long now = System.nanoTime();
+    if (m_lastRow >= 0 && firstRow != m_lastRow) {
+      final long delta = firstRow - m_lastRow;
+      final double seconds = Math.max(1L, now - m_lastTime) / 1e9;
+      m_direction = delta > 0 ? 1 : -1;
+      // Exponential moving average of the speed
+      m_rowsPerSecond = 0.5 * m_rowsPerSecond + 0.5 * Math.abs(delta) / seconds;
+    }
+    m_lastRow  = firstRow;
+    m_lastTime = now;
+
+    if (visibleRows <= 0) {
+      return;
+    }
+    final long rowsBySpeed = (long)(m_rowsPerSecond * LOOKAHEAD_SECONDS);
+    final long rows = Math.min(
+      (long)screens * visibleRows * MAX_SPEEDUP,
+      Math.max((long)screens * visibleRows, rowsBySpeed)
+    );
+    final long length = provider.getDataLengthLong();
+    long start;
+    long end;
+    if (m_direction > 0) {
+      start = (firstRow + visibleRows) * bytesPerRow;
+      end   = start + rows * bytesPerRow;
+      // Do not request already requested data
+      if (start >= m_requestedStart && start < m_requestedEnd) {
+        start = m_requestedEnd;
+      }
+    } else {
+      end   = firstRow * bytesPerRow;
+      start = end - rows * bytesPerRow;
+      if (end > m_requestedStart && end <= m_requestedEnd) {
+        end = m_requestedStart;
+      }
+    }
+    start = Math.max(0, start);
+    end   = Math.min(length, end);
+    if (start >= end) {
+      return;
+    }
+    m_requestedStart = start;
+    m_requestedEnd   = end;
+
+    final long generation = m_generation.get();
+    final long offset = start;
+    final long count  = end - start;
+    m_executor.execute(() -> prefetch(provider, offset, count, generation));
+  }
+
+  /** Stops the background thread. */
+  void shutdown()
+  {
+    m_generation.incrementAndGet();
+    m_executor.shutdownNow();
+  }
+
+  /**
+   * Reads or requests data in the background thread.
+   *
+   * @param provider Provider to read
+   * @param offset The start offset of data
+   * @param length Count of bytes to read
+   * @param generation Generation, at which request was made
+   */
+  private void prefetch(IDataProvider provider, long offset, long length, long generation)
+  {
+    try {
+      for (long pos = 0; pos < length; pos += CHUNK_SIZE) {
+        if (generation != m_generation.get()) {
+          return;
+        }
+        final int size = (int)Math.min(CHUNK_SIZE, length - pos);
+        if (provider instanceof IAsyncDataProvider) {
+          if (!provider.hasData(offset + pos, size)) {
+            ((IAsyncDataProvider)provider).fetch(offset + pos, size);
+          }
+        } else {
+          provider.getData(offset + pos, m_buffer, 0, size);
+        }
+      }
+    } catch (RuntimeException ex) {
+      // Read ahead is only an optimization, so errors will be reported,
+      // when data will be really requested
+    }
+  }
+}
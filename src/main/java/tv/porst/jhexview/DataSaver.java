@@ -0,0 +1,285 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Writes content of a data provider into a file. Saver supports two modes:
+ * <ul>
+ * <li>{@link #writeRanges in-place} writing of changed ranges only. Ranges are
+ *   written by positional writes, so saving of a few modifications of a huge
+ *   file costs only a few kilobytes of I/O. Ranges can be obtained from
+ *   {@link JHexView#getModifiedOffsets()} or from
+ *   {@link PieceTableDataProvider#getModifiedRanges()}</li>
+ * <li>{@link #writeAtomic atomic} writing of whole content into a temporary
+ *   file, which then replaces the target file by renaming, so the target file
+ *   never contains partially written data</li>
+ * </ul>
+ * Data is read from the provider by chunks into a reusable buffer. If provider
+ * supports {@link ISnapshotDataProvider snapshots}, data is read from the snapshot,
+ * taken at the start of saving, so edits, made while the file is written, do
+ * not get into it.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class DataSaver
+{
+  /** Size of chunks in which data is read and written. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /** The provider which content is saved. */
+  private final IDataProvider m_data;
+  /** Listener that is notified about progress, can be {@code null}. */
+  private IProgressListener m_listener;
+
+  /**
+   * Creates saver for the specified provider.
+   *
+   * @param data Provider which content will be saved
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   */
+  public DataSaver(IDataProvider data)
+  {
+    if (data == null) {
+      throw new NullPointerException("Saved data provider can't be null");
+    }
+    m_data = data;
+  }
+
+  /**
+   * Sets the listener, that will be notified about progress of saving.
+   *
+   * @param listener Listener or {@code null}, if progress is not required
+   */
+  public void setProgressListener(IProgressListener listener)
+  {
+    m_listener = listener;
+  }
+
+  /**
+   * Coalesces offsets of modified bytes into ranges of adjacent bytes.
+   *
+   * @param offsets Offsets of modified bytes in increasing order, as returned
+   *        by {@link JHexView#getModifiedOffsets()}
+   *
+   * @return Array of ranges, each range is represented by two consecutive
+   *         elements: start offset (inclusive) and end offset (exclusive)
+   */
+  public static long[] toRanges(long[] offsets)
+  {
+    final long[] ranges = new long[2 * offsets.length];
+    int count = 0;
+    for (final long offset : offsets) {
+      if (count > 0 && ranges[count - 1] == offset) {
+        ranges[count - 1] = offset + 1;
+      } else {
+        ranges[count++] = offset;
+        ranges[count++] = offset + 1;
+      }
+    }
+    return Arrays.copyOf(ranges, count);
+  }
+
+  /**
+   * Saves content of the provider into the file, writing only modified bytes.
+   * File must contain unmodified content of the provider.
+   *
+   * @param file File to write
+   * @param offsets Offsets of modified bytes in increasing order, as returned
+   *        by {@link JHexView#getModifiedOffsets()}
+   *
+   * @throws IOException If file can not be written
+   *
+   * @see #writeRanges
+   */
+  public void writeModified(Path file, long[] offsets) throws IOException
+  {
+    writeRanges(file, toRanges(offsets));
+  }
+
+  /**
+   * Saves content of the provider into the file, writing only specified ranges.
+   * File must contain unmodified content of the provider, except specified
+   * ranges, and must exist. After writing file is truncated or extended to
+   * the length of data.
+   * <p>
+   * Note that ranges are read from the provider while the file is written,
+   * so data in ranges must not be read from the same file at other offsets,
+   * for example, when {@link PieceTableDataProvider#hasMovedData()} returns
+   * {@code true}. Use {@link #writeAtomic} in such cases.
+   *
+   * @param file File to write
+   * @param ranges Array of ranges in increasing order, each range is represented
+   *        by two consecutive elements: start offset (inclusive) and end offset
+   *        (exclusive)
+   *
+   * @throws IOException If file can not be written
+   * @throws IllegalArgumentException If length of {@code ranges} is odd
+   */
+  public void writeRanges(Path file, long[] ranges) throws IOException
+  {
+    if (ranges.length % 2 != 0) {
+      throw new IllegalArgumentException("Each range must be defined by start and end, but array has odd length " + ranges.length);
+    }
+    final IDataProvider data = snapshot(m_data);
+    final long length = data.getDataLengthLong();
+    long total = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      total += Math.min(ranges[i + 1], length) - Math.min(ranges[i], length);
+    }
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      final byte[] buffer = new byte[CHUNK_SIZE];
+      long processed = 0;
+      for (int i = 0; i < ranges.length; i += 2) {
+        final long end = Math.min(ranges[i + 1], length);
+        for (long offset = ranges[i]; offset < end;) {
+          final int count = (int)Math.min(CHUNK_SIZE, end - offset);
+          write(data, channel, buffer, offset, count);
+          offset += count;
+          processed += count;
+          fireProgress(processed, total);
+        }
+      }
+      if (channel.size() > length) {
+        channel.truncate(length);
+      }
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Saves whole content of the provider into the temporary file in the same
+   * directory, and then atomically replaces the specified file by it. If
+   * file system does not support atomic moving, file is replaced non-atomically.
+   * If saving fails, the target file is not changed.
+   * <p>
+   * If the target file exists, its permissions, owner and group (or DOS
+   * attributes on file systems without POSIX attributes) are copied to the
+   * temporary file before replacing, so the saved file keeps them. Owner and
+   * group, which current user is not allowed to set, are left unchanged.
+   *
+   * @param file File to write, can be absent
+   *
+   * @throws IOException If file can not be written
+   */
+  public void writeAtomic(Path file) throws IOException
+  {
+    final Path target = file.toAbsolutePath();
+    final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      final IDataProvider data = snapshot(m_data);
+      final long length = data.getDataLengthLong();
+      try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        for (long offset = 0; offset < length;) {
+          final int count = (int)Math.min(CHUNK_SIZE, length - offset);
+          write(data, channel, buffer, offset, count);
+          offset += count;
+          fireProgress(offset, length);
+        }
+        channel.force(true);
+      }
+      if (Files.exists(target)) {
+        copyAttributes(target, temp);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Copies permissions, owner and group of the file to another file. If file
+   * system does not support POSIX attributes, copies DOS attributes instead.
+   *
+   * @param source File which attributes are copied
+   * @param target File which attributes are changed
+   *
+   * @throws IOException If attributes can not be read or permissions can not be set
+   */
+  private static void copyAttributes(Path source, Path target) throws IOException
+  {
+    final PosixFileAttributeView posix = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+    if (posix != null) {
+      final PosixFileAttributes attrs = Files.readAttributes(source, PosixFileAttributes.class);
+      try {
+        posix.setGroup(attrs.group());
+        posix.setOwner(attrs.owner());
+      } catch (FileSystemException ex) {
+        // Only privileged users can give files away, keep the current owner
+      }
+      // Set permissions last, because changing owner can reset setuid bits
+      posix.setPermissions(attrs.permissions());
+      return;
+    }
+    final DosFileAttributeView dos = Files.getFileAttributeView(target, DosFileAttributeView.class);
+    if (dos != null) {
+      final DosFileAttributes attrs = Files.readAttributes(source, DosFileAttributes.class);
+      dos.setArchive(attrs.isArchive());
+      dos.setHidden(attrs.isHidden());
+      dos.setSystem(attrs.isSystem());
+      // Read-only files can not be replaced, so the flag is not copied
+    }
+  }
+
+  /**
+   * Returns the provider, from which data will be read.
+   *
+   * @param data Saved provider
+   *
+   * @return Snapshot of the provider, if it supports snapshots, otherwise the
+   *         provider itself
+   */
+  private static IDataProvider snapshot(IDataProvider data)
+  {
+    return data instanceof ISnapshotDataProvider ? ((ISnapshotDataProvider)data).snapshot() : data;
+  }
+
+  /**
+   * Copies data from the provider into the file at the same offset.
+   *
+   * @param data Provider with data
+   * @param channel Channel of the file
+   * @param buffer Buffer for data
+   * @param offset Offset of the data
+   * @param count Count of bytes to copy, not greater then the buffer length
+   *
+   * @throws IOException If file can not be written
+   */
+  private static void write(IDataProvider data, FileChannel channel, byte[] buffer, long offset, int count) throws IOException
+  {
+    data.getData(offset, buffer, 0, count);
+    final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, count);
+    long position = offset;
+    while (bb.hasRemaining()) {
+      position += channel.write(bb, position);
+    }
+  }
+
+  private void fireProgress(long processed, long total)
+  {
+    if (m_listener != null) {
+      m_listener.progressChanged(processed, total);
+    }
+  }
+}
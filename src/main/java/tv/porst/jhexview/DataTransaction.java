@@ -0,0 +1,164 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Batch of writes into a data provider, that are applied together. Writes are
+ * recorded by {@link #write(long, byte[])} and applied by {@link #commit()}
+ * inside one {@link IDataProvider#beginUpdate() batch of changes}, so listeners
+ * of the provider receive one event with the range, that covers all writes,
+ * instead of one event per write.
+ * <p>
+ * Transactions, created by {@link JHexView#beginTransaction()}, in addition
+ * mark written bytes as modified and are undone by one undoable edit.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class DataTransaction
+{
+  /** The provider into which data is written. */
+  private final IDataProvider m_provider;
+  /** Action, that is executed after successful commit, can be {@code null}. */
+  private final Consumer<DataTransaction> m_onCommit;
+  /** Recorded writes in order of recording. */
+  private final ArrayList<Write> m_writes = new ArrayList<>();
+  /** Whether writes are applied to the provider. */
+  private boolean m_committed;
+
+  /** One recorded write. */
+  private static final class Write
+  {
+    final long offset;
+    final byte[] data;
+    /** Data, that was overwritten on commit. */
+    byte[] old;
+
+    Write(long offset, byte[] data)
+    {
+      this.offset = offset;
+      this.data = data;
+    }
+  }
+
+  /**
+   * Creates empty transaction for the specified provider.
+   *
+   * @param provider Provider into which data will be written
+   *
+   * @throws NullPointerException If {@code provider} is {@code null}
+   */
+  public DataTransaction(IDataProvider provider)
+  {
+    this(provider, null);
+  }
+
+  DataTransaction(IDataProvider provider, Consumer<DataTransaction> onCommit)
+  {
+    if (provider == null) {
+      throw new NullPointerException("Data provider of transaction can't be null");
+    }
+    m_provider = provider;
+    m_onCommit = onCommit;
+  }
+
+  /**
+   * Records write of data at the specified offset. Data is copied, so array
+   * can be reused by caller.
+   *
+   * @param offset The start offset for the data to be written
+   * @param data The data to write
+   *
+   * @return This transaction
+   *
+   * @throws IllegalStateException If transaction is already committed
+   */
+  public DataTransaction write(long offset, byte[] data)
+  {
+    if (m_committed) {
+      throw new IllegalStateException("Transaction already committed");
+    }
+    m_writes.add(new Write(offset, data.clone()));
+    return this;
+  }
+
+  /**
+   * Returns count of recorded writes.
+   *
+   * @return Count of writes
+   */
+  public int getWriteCount() { return m_writes.size(); }
+
+  /**
+   * Returns whether transaction is committed.
+   *
+   * @return {@code true}, if writes are applied to the provider
+   */
+  public boolean isCommitted() { return m_committed; }
+
+  /**
+   * Applies all recorded writes to the provider in order of recording.
+   * Listeners of the provider are notified once.
+   *
+   * @throws IllegalStateException If transaction is already committed
+   */
+  public void commit()
+  {
+    apply();
+    if (m_onCommit != null) {
+      m_onCommit.accept(this);
+    }
+  }
+
+  IDataProvider getProvider() { return m_provider; }
+  long getOffset(int index) { return m_writes.get(index).offset; }
+  int getLength(int index) { return m_writes.get(index).data.length; }
+
+  /**
+   * Applies all recorded writes and remembers overwritten data.
+   *
+   * @throws IllegalStateException If transaction is already committed
+   */
+  void apply()
+  {
+    if (m_committed) {
+      throw new IllegalStateException("Transaction already committed");
+    }
+    m_provider.beginUpdate();
+    try {
+      for (final Write w : m_writes) {
+        w.old = m_provider.getData(w.offset, w.data.length);
+        m_provider.setData(w.offset, w.data);
+      }
+    } finally {
+      m_provider.endUpdate();
+    }
+    m_committed = true;
+  }
+
+  /**
+   * Restores overwritten data in reverse order of writes. After that
+   * transaction can be committed again.
+   *
+   * @throws IllegalStateException If transaction is not committed
+   */
+  void revert()
+  {
+    if (!m_committed) {
+      throw new IllegalStateException("Transaction is not committed");
+    }
+    m_provider.beginUpdate();
+    try {
+      for (int i = m_writes.size() - 1; i >= 0; --i) {
+        final Write w = m_writes.get(i);
+        m_provider.setData(w.offset, w.old);
+      }
+    } finally {
+      m_provider.endUpdate();
+    }
+    m_committed = false;
+  }
+}
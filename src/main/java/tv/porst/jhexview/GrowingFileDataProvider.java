@@ -0,0 +1,278 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only data provider that follows a file, which continuously grows, such
+ * as a packet capture or a trace buffer. Size of the file is polled by a background
+ * thread. When file grows, listeners receive an event with the range of appended
+ * bytes, so {@link JHexView} updates only its scroll model and rows with the new
+ * data. When file is truncated, listeners receive an event, that marks all data
+ * after the new end as changed.
+ * <p>
+ * Polling is adaptive: while file grows, it is polled with the {@link #DEFAULT_MIN_INTERVAL
+ * minimal interval}, after each poll without changes interval is doubled up
+ * to the {@link #DEFAULT_MAX_INTERVAL maximal interval}.
+ * <p>
+ * Data is read from the file on demand by positional reads and is not cached.
+ * Wrap provider into a {@link CachingDataProvider} to read earlier data only
+ * once: appending invalidates only the cached page, that contains the old end
+ * of the file.
+ * <p>
+ * Provider must be {@link #close() closed} when it is no longer needed.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class GrowingFileDataProvider extends AbstractDataProvider implements Closeable
+{
+  /** Default interval in milliseconds between polls while file grows. */
+  public static final long DEFAULT_MIN_INTERVAL = 20;
+  /** Default interval in milliseconds between polls while file does not change. */
+  public static final long DEFAULT_MAX_INTERVAL = 1000;
+
+  private final FileChannel m_channel;
+  /** Executor with one daemon thread, that polls size of the file. */
+  private final ScheduledExecutorService m_poller;
+  private final long m_minInterval;
+  private final long m_maxInterval;
+
+  /** Size of the file, observed by the last poll. */
+  private volatile long m_length;
+  /** Current interval between polls. Used only by the polling thread. */
+  private long m_interval;
+
+  /**
+   * Opens specified file for reading and starts following it with default
+   * polling intervals.
+   *
+   * @param file File to follow
+   *
+   * @throws IOException If file can not be opened
+   */
+  public GrowingFileDataProvider(Path file) throws IOException
+  {
+    this(file, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+  }
+
+  /**
+   * Opens specified file for reading and starts following it.
+   *
+   * @param file File to follow
+   * @param minInterval Interval in milliseconds between polls while file grows,
+   *        must be positive
+   * @param maxInterval Interval in milliseconds between polls while file does
+   *        not change, must not be less than {@code minInterval}
+   *
+   * @throws IOException If file can not be opened
+   * @throws IllegalArgumentException If {@code minInterval} is not positive or
+   *         {@code maxInterval} is less than {@code minInterval}
+   */
+  public GrowingFileDataProvider(Path file, long minInterval, long maxInterval) throws IOException
+  {
+    if (minInterval <= 0) {
+      throw new IllegalArgumentException("Poll interval must be positive: " + minInterval);
+    }
+    if (maxInterval < minInterval) {
+      throw new IllegalArgumentException("Maximal poll interval " + maxInterval
+        + " is less than minimal interval " + minInterval);
+    }
+    m_channel = FileChannel.open(file, StandardOpenOption.READ);
+    m_length = m_channel.size();
+    m_minInterval = minInterval;
+    m_maxInterval = maxInterval;
+    m_interval = minInterval;
+    m_poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        final Thread thread = new Thread(r, "JHexView file poller");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    schedulePoll();
+  }
+
+  /**
+   * Checks size of the file immediately and notifies listeners, if it was changed.
+   * Method is called periodically by the polling thread, but can be called from
+   * any thread, for example, when the writer of the file is known to finish
+   * a portion of data.
+   *
+   * @return {@code true}, if size of the file was changed since the last check
+   *
+   * @throws UncheckedIOException If size of the file can not be determined
+   */
+  public boolean poll()
+  {
+    final long oldLength;
+    final long newLength;
+    synchronized (this) {
+      try {
+        newLength = m_channel.size();
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Can not determine size of the file", ex);
+      }
+      oldLength = m_length;
+      if (newLength == oldLength) {
+        return false;
+      }
+      m_length = newLength;
+    }
+    if (newLength > oldLength) {
+      fireDataChangedListener(oldLength, newLength - oldLength);
+    } else {
+      fireDataChangedListener(newLength, -1);
+    }
+    return true;
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    final long total = m_length;
+    if (offset + length > total) {
+      length = (int)(total - offset);
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    final int count = getData(offset, result, 0, length);
+    return count == length ? result : Arrays.copyOf(result, count);
+  }
+
+  @Override
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    final long total = m_length;
+    if (offset + length > total) {
+      length = (int)(total - offset);
+    }
+    if (length <= 0) {
+      return 0;
+    }
+    final ByteBuffer bb = ByteBuffer.wrap(buffer, bufferOffset, length);
+    try {
+      long position = offset;
+      while (bb.hasRemaining()) {
+        final int count = m_channel.read(bb, position);
+        if (count < 0) {
+          // File was truncated after the last poll
+          break;
+        }
+        position += count;
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Can not read file at 0x" + Long.toHexString(offset), ex);
+    }
+    return bb.position() - bufferOffset;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return Size of the file, observed by the last poll, or {@link Integer#MAX_VALUE},
+   *         if file is bigger
+   */
+  @Override
+  public int getDataLength()
+  {
+    return (int)Math.min(m_length, Integer.MAX_VALUE);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return Size of the file, observed by the last poll
+   */
+  @Override
+  public long getDataLengthLong()
+  {
+    return m_length;
+  }
+
+  @Override
+  public boolean hasData(long offset, int length)
+  {
+    return offset >= 0 && offset + length <= m_length;
+  }
+
+  /** @return Always {@code false} */
+  @Override
+  public boolean isEditable()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return false;
+  }
+
+  /**
+   * Always throws {@link UnsupportedOperationException}, because provider is read-only.
+   */
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    throw new UnsupportedOperationException("GrowingFileDataProvider is read-only");
+  }
+
+  /**
+   * Stops following of the file and closes it.
+   *
+   * @throws IOException If file can not be closed
+   */
+  @Override
+  public void close() throws IOException
+  {
+    m_poller.shutdownNow();
+    m_channel.close();
+  }
+
+  /** Schedules the next poll after the current interval. */
+  private void schedulePoll()
+  {
+    final Runnable task = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          // Poll often while file grows and back off while it is idle
+          m_interval = poll() ? m_minInterval : Math.min(2 * m_interval, m_maxInterval);
+        } catch (UncheckedIOException ex) {
+          m_interval = m_maxInterval;
+        } finally {
+          // Exception, thrown by a listener, must not stop following of the file
+          if (m_channel.isOpen()) {
+            schedulePoll();
+          }
+        }
+      }
+    };
+    try {
+      m_poller.schedule(task, m_interval, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ex) {
+      // Provider is closed
+    }
+  }
+}
@@ -0,0 +1,33 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Data provider that loads data asynchronously. When {@link #hasData(long, int)}
+ * returns {@code false}, {@link JHexView} requests missing data with
+ * {@link #fetch(long, int)}, draws rows without data as {@code ??} and repaints
+ * exactly that rows when data arrives. The component is not disabled while
+ * waiting for data and {@link #keepTrying()} is not used for such providers.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface IAsyncDataProvider extends IDataProvider
+{
+  /**
+   * Requests loading of the data segment. This method must not block. After
+   * successful completion of the returned future {@link #hasData(long, int)}
+   * for the requested segment must return {@code true}, at least until the
+   * next request.
+   * <p>
+   * The future can be completed in any thread.
+   *
+   * @param offset The start offset of the requested data.
+   * @param length The length of the requested data in bytes.
+   * @return Future that is completed when data segment is loaded, or completed
+   *         exceptionally, if data can not be loaded.
+   */
+  CompletableFuture<Void> fetch(long offset, int length);
+}
@@ -2,6 +2,8 @@
 
 package tv.porst.jhexview;
 
+import java.util.Arrays;
+
 public interface IDataProvider
 {
   /**
@@ -19,11 +21,49 @@ public interface IDataProvider
   byte[] getData(long offset, int length);
 
   /**
-   * Returns the data length in number of bytes.
+   * Reads a data segment of a given length into the specified buffer. This method
+   * allows to read data without allocating a new array on each call.
+   * <p>
+   * Default implementation copies result of {@link #getData(long, int)}; providers
+   * should override it to read data directly into the buffer.
+   *
+   * @param offset The start offset of the data.
+   * @param buffer The buffer into which the data is read.
+   * @param bufferOffset The start offset in the buffer at which the data is written.
+   * @param length The maximum count of bytes to read.
+   * @return The number of bytes actually read. Can be less than {@code length}
+   *         if the end of the data has been reached.
+   * @since 2.2
+   */
+  default int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    final byte[] data = getData(offset, length);
+    final int count = Math.min(data.length, length);
+    System.arraycopy(data, 0, buffer, bufferOffset, count);
+    return count;
+  }
+
+  /**
+   * Returns the data length in number of bytes. Providers that can contain more
+   * than {@link Integer#MAX_VALUE} bytes should return {@link Integer#MAX_VALUE}
+   * and override {@link #getDataLengthLong()}.
    * @return The data length in number of bytes.
    */
   int getDataLength();
 
+  /**
+   * Returns the data length in number of bytes as a {@code long}. {@link JHexView}
+   * uses only this method to determine size of data, so providers with data
+   * bigger than 2 GiB must override it. Default implementation returns
+   * {@link #getDataLength()}.
+   * @return The data length in number of bytes.
+   * @since 2.2
+   */
+  default long getDataLengthLong()
+  {
+    return getDataLength();
+  }
+
   /**
    * Returns whether the requested data segment is available.
    * @param offset The start offset of the requested data.
@@ -35,6 +75,20 @@ public interface IDataProvider
   /** Returns whether the data stream provided by this instance is writeable. */
   boolean isEditable();
 
+  /**
+   * Returns whether the specified data segment can be written by {@link #setData}.
+   * Providers, only parts of which are writeable, must override this method.
+   * Default implementation returns {@link #isEditable()}.
+   * @param offset The start offset of the data segment.
+   * @param length The length of the data segment in bytes.
+   * @return True if all bytes of the segment are writeable, false otherwise.
+   * @since 2.2
+   */
+  default boolean isEditable(long offset, int length)
+  {
+    return isEditable();
+  }
+
   /**
    * Returns whether the data segment requested by the last call of {@link #hasData(long, int)}
    * is available.
@@ -43,6 +97,95 @@ public interface IDataProvider
    */
   boolean keepTrying();
 
+  /**
+   * Starts a batch of changes. Until the matching {@link #endUpdate()} listeners
+   * are not notified about changes, instead all changes are merged and reported
+   * by one event at the end of the batch. Batches can be nested.
+   * Default implementation does nothing, so each change is reported immediately.
+   * @since 2.2
+   */
+  default void beginUpdate()
+  {
+  }
+
+  /**
+   * Finishes a batch of changes, started by {@link #beginUpdate()}. If this is
+   * the outermost batch and data was changed, listeners are notified by one
+   * event with the range, that covers all changes.
+   * Default implementation does nothing.
+   * @since 2.2
+   */
+  default void endUpdate()
+  {
+  }
+
+  /**
+   * Returns whether data can be inserted into and removed from this provider,
+   * i.e. whether {@link #insertData} and {@link #removeData} are supported.
+   * Default implementation returns {@code false}.
+   * @return {@code true} if length of data can be changed.
+   * @since 2.2
+   */
+  default boolean isResizable()
+  {
+    return false;
+  }
+
+  /**
+   * Inserts the specified data at the given offset, shifting all following data.
+   * Note: Only works if {@link #isResizable()} returns <code>true</code>.
+   * @param offset The offset in range {@code [0; getDataLengthLong()]} at which data is inserted.
+   * @param data The data to insert.
+   * @throws UnsupportedOperationException If provider is not {@link #isResizable() resizable}
+   * @since 2.2
+   */
+  default void insertData(long offset, byte[] data)
+  {
+    throw new UnsupportedOperationException("Insertion of data is not supported");
+  }
+
+  /**
+   * Inserts data of another provider at the given offset, shifting all following data.
+   * Providers, that can refer to data of the source without copying, for example,
+   * to {@link ISnapshotDataProvider#snapshot() snapshots} of themselves, should
+   * override this method. Default implementation reads the source by chunks and
+   * inserts them by {@link #insertData(long, byte[])}.
+   * Note: Only works if {@link #isResizable()} returns <code>true</code>.
+   * @param offset The offset in range {@code [0; getDataLengthLong()]} at which data is inserted.
+   * @param source The provider with data to insert.
+   * @param sourceOffset The start offset of the inserted data in the source.
+   * @param length The count of bytes to insert.
+   * @throws UnsupportedOperationException If provider is not {@link #isResizable() resizable}
+   * @throws IndexOutOfBoundsException If source does not contain requested data
+   * @since 2.2
+   */
+  default void insertData(long offset, IDataProvider source, long sourceOffset, long length)
+  {
+    final byte[] buffer = new byte[(int)Math.min(length, 64 * 1024)];
+    for (long done = 0; done < length;) {
+      final int count = source.getData(sourceOffset + done, buffer, 0, (int)Math.min(buffer.length, length - done));
+      if (count <= 0) {
+        throw new IndexOutOfBoundsException("Source has no data at offset " + (sourceOffset + done));
+      }
+      // Provider can keep inserted array, so each chunk is passed in a new array
+      insertData(offset + done, Arrays.copyOf(buffer, count));
+      done += count;
+    }
+  }
+
+  /**
+   * Removes the specified count of bytes at the given offset, shifting all following data.
+   * Note: Only works if {@link #isResizable()} returns <code>true</code>.
+   * @param offset The start offset of the data to remove.
+   * @param length The count of bytes to remove.
+   * @throws UnsupportedOperationException If provider is not {@link #isResizable() resizable}
+   * @since 2.2
+   */
+  default void removeData(long offset, long length)
+  {
+    throw new UnsupportedOperationException("Removing of data is not supported");
+  }
+
   /**
    * Removes a listener from the DataProvider.
    * @param listener The listener to remove.
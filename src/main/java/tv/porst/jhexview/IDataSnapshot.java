@@ -0,0 +1,24 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Immutable view of content of a {@link ISnapshotDataProvider data provider}
+ * at some version. Content of snapshot never changes, even if the provider is
+ * edited, so long running tasks, such as search or export, can read it from
+ * a background thread without any synchronization with the editing thread.
+ * <p>
+ * Snapshots are read-only: they are not {@link #isEditable() editable} and
+ * never notify their listeners.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface IDataSnapshot extends IDataProvider
+{
+  /**
+   * Returns version of the provider, at which snapshot was created.
+   * @return The version, see {@link ISnapshotDataProvider#getVersion()}.
+   */
+  long getVersion();
+}
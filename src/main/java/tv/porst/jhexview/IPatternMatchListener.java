@@ -0,0 +1,23 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.EventListener;
+
+/**
+ * Listener that receives matches of a {@link PatternSet set of patterns}.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface IPatternMatchListener extends EventListener
+{
+  /**
+   * Called for each found occurrence of a pattern. Called in the thread, that
+   * runs the search.
+   *
+   * @param patternId Index of the found pattern in the set
+   * @param offset Offset of the first byte of the occurrence
+   */
+  void patternFound(int patternId, long offset);
+}
@@ -0,0 +1,23 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.EventListener;
+
+/**
+ * Listener that receives notifications about progress of long operations
+ * over data, such as saving.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface IProgressListener extends EventListener
+{
+  /**
+   * Called periodically while operation is performed. Can be called in any thread.
+   *
+   * @param processed Count of bytes already processed
+   * @param total Total count of bytes, that must be processed
+   */
+  void progressChanged(long processed, long total);
+}
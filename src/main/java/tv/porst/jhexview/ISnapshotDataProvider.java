@@ -0,0 +1,29 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Data provider, that can create cheap {@link IDataSnapshot snapshots} of its
+ * content. Snapshots allow background tasks to read a stable image of data
+ * while the user continues editing, without locking the editing path and
+ * without seeing half-applied changes.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface ISnapshotDataProvider extends IDataProvider
+{
+  /**
+   * Returns the current version of content. Version increases on each change
+   * of content, so equal versions of the provider mean equal content.
+   * @return The current version.
+   */
+  long getVersion();
+
+  /**
+   * Creates immutable view of the current content. Creation of snapshot must
+   * not copy data.
+   * @return Snapshot of the current content, never {@code null}.
+   */
+  IDataSnapshot snapshot();
+}
@@ -0,0 +1,48 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Data provider, which address space is only partially backed by data, for
+ * example, memory of a process or memory map of a microcontroller. Space consists
+ * of mapped regions and unmapped gaps between them. {@link JHexView} draws
+ * bytes in gaps as {@code ??}, but does not treat them as missing data, so
+ * {@link #hasData(long, int)} must return {@code true} for gaps, and
+ * {@link #getData(long, int)} must not access any backing store for them.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface ISparseDataProvider extends IDataProvider
+{
+  /**
+   * Returns whether the byte at the specified offset belongs to a mapped region.
+   * @param offset The offset of the byte.
+   * @return True if the byte is mapped, false if it is in a gap.
+   */
+  boolean isMapped(long offset);
+
+  /**
+   * Returns the end of the mapped region, that contains the specified offset.
+   * @param offset The offset inside the region.
+   * @return The offset right after the last byte of the region, or -1, if the
+   *         specified offset is not mapped.
+   */
+  long getRegionEnd(long offset);
+
+  /**
+   * Returns the start of the first mapped region that starts after the specified offset.
+   * @param offset The offset to start searching from.
+   * @return The start offset of the next region, or -1, if there are no regions
+   *         after the specified offset.
+   */
+  long nextRegion(long offset);
+
+  /**
+   * Returns the start of the last mapped region that starts before the specified offset.
+   * @param offset The offset to start searching from.
+   * @return The start offset of the previous region, or -1, if there are no regions
+   *         before the specified offset.
+   */
+  long previousRegion(long offset);
+}
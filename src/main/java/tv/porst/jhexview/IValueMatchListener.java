@@ -0,0 +1,25 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.nio.ByteOrder;
+import java.util.EventListener;
+
+/**
+ * Listener that receives occurrences of a {@link ValuePattern number}.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public interface IValueMatchListener extends EventListener
+{
+  /**
+   * Called for each found occurrence of the number. Called in the thread, that
+   * runs the search.
+   *
+   * @param offset Offset of the first byte of the occurrence
+   * @param type Type, in which the number is encoded at that offset
+   * @param order Byte order of the encoding
+   */
+  void valueFound(long offset, ValuePattern.Type type, ByteOrder order);
+}
@@ -32,12 +32,16 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
@@ -46,14 +50,18 @@ import javax.swing.JComponent;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollBar;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 import javax.swing.TransferHandler;
+import javax.swing.UIManager;
 import javax.swing.event.EventListenerList;
 import javax.swing.event.UndoableEditEvent;
 import javax.swing.event.UndoableEditListener;
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.CompoundEdit;
 import javax.swing.undo.UndoManager;
 import javax.swing.undo.UndoableEdit;
 
@@ -96,6 +104,7 @@ public final class JHexView extends JComponent
 
   private static final int PADDING_OFFSETVIEW = 20;
 
+
   /**
    * A stroke definition used for showing a hint box in the view that doesn't currently has
    * the input focus.
@@ -115,7 +124,7 @@ public final class JHexView extends JComponent
    * The value indicates how often the data at the position has been modified. (Important when
    * undoing actions).
    */
-  private final TreeMap<Long, Integer> m_modifiedOffsets = new TreeMap<>();
+  private final ModifiedOffsets m_modifiedOffsets = new ModifiedOffsets();
 
   /**
    * Defines whether to show data that has been modified by the user in a separate color.
@@ -226,10 +235,34 @@ public final class JHexView extends JComponent
    */
   private final JScrollBar m_horizontalScrollbar = new JScrollBar(JScrollBar.HORIZONTAL, 0, 1, 0, 1);
 
+  /**
+   * Maximum count of units in the {@link #m_scrollbar vertical scrollbar} model.
+   * If data contains more rows, each scrollbar unit represents several rows.
+   */
+  private static final int MAX_SCROLL_UNITS = Integer.MAX_VALUE / 2;
+
+  /**
+   * Count of rows that are represented by one unit of the {@link #m_scrollbar
+   * vertical scrollbar}. Equals to 1 unless data has more than {@link #MAX_SCROLL_UNITS}
+   * rows, because the scrollbar model is {@code int}-based.
+   */
+  private long m_rowsPerScrollUnit = 1;
+
+  /**
+   * Maximum value of {@link #m_firstRow} for the current data.
+   */
+  private long m_maxFirstRow = 0;
+
+  /**
+   * Flag that is set while the vertical scrollbar is updated from {@link #m_firstRow},
+   * so its adjustment events must not change the first row.
+   */
+  private boolean m_scrollbarSync = false;
+
   /**
    * The first visible row.
    */
-  private int m_firstRow = 0;
+  private long m_firstRow = 0;
 
   /**
    * The first visible column.
@@ -256,6 +289,12 @@ public final class JHexView extends JComponent
    */
   private boolean editable = false;
 
+  /**
+   * Flag that determines whether typed data is inserted at the caret position
+   * or overwrites existing data.
+   */
+  private boolean m_insertMode = false;
+
   /**
    * Blinking caret of the component.
    */
@@ -318,6 +357,95 @@ public final class JHexView extends JComponent
    */
   private Timer m_updateTimer;
 
+  /**
+   * Absolute indexes of rows, for which data was requested from the
+   * {@link IAsyncDataProvider asynchronous data provider}, but has not arrived yet.
+   */
+  private final HashSet<Long> m_pendingRows = new HashSet<>();
+  /**
+   * Increments, when {@link #m_pendingRows} are forgotten, because provider or
+   * count of bytes per row changes, so requests made before are ignored when complete.
+   */
+  private long m_pendingGeneration;
+
+  /**
+   * Flags for each visible row (relative to the {@link #m_firstRow first visible row}),
+   * that indicate, that data for that row is not available yet. Used only when
+   * {@link #m_hasMissingRows} is {@code true}.
+   */
+  private boolean[] m_missingRows = new boolean[0];
+
+  /**
+   * Determines whether some of visible rows have no data yet.
+   */
+  private boolean m_hasMissingRows = false;
+
+  /**
+   * Flags for each visible byte, that indicate, that the byte is in a gap of
+   * the {@link ISparseDataProvider sparse data provider}. Used only when
+   * {@link #m_hasUnmappedBytes} is {@code true}.
+   */
+  private boolean[] m_unmappedBytes = new boolean[0];
+
+  /**
+   * Determines whether some of visible bytes are not mapped.
+   */
+  private boolean m_hasUnmappedBytes = false;
+
+  /**
+   * Length of data, for which the scroll model was calculated last time.
+   */
+  private long m_scrolledDataLength = -1;
+
+  /**
+   * Determines whether the view follows the end of data, when data grows.
+   */
+  private boolean m_stickToEnd = false;
+
+  /**
+   * Count of screens to read ahead in the direction of scrolling. If 0, read
+   * ahead is disabled.
+   */
+  private int m_prefetchScreens = 0;
+
+  /**
+   * Reads data ahead of the visible area. Created when read ahead is enabled.
+   */
+  private DataPrefetcher m_prefetcher;
+
+  /**
+   * Buffer with the visible data. Filled once per paint and shared between
+   * the hex and ASCII views. Grows when more bytes become visible.
+   */
+  private byte[] m_drawBuffer = new byte[0];
+
+  /**
+   * Engine that is used to search data of the current data provider. Created
+   * on first search, so its window is allocated only when required.
+   */
+  private SearchEngine m_searchEngine;
+
+  /**
+   * Determines whether data is searched by several threads.
+   */
+  private boolean m_parallelSearch = false;
+
+  /**
+   * Index of the current data, that speeds up search, or {@code null}.
+   */
+  private NgramIndex m_searchIndex;
+
+  /**
+   * Search, that runs in background, or {@code null}. Its progress is drawn
+   * over the header of the component.
+   */
+  private SearchTask m_searchTask;
+
+  /**
+   * Buffer that is used to read single bytes from the data provider.
+   */
+  private final byte[] m_byteBuffer = new byte[1];
+
   /**
    * Flag that indicates whether the component is being drawn for the first
    * time.
@@ -328,6 +456,11 @@ public final class JHexView extends JComponent
    * Default internal listener that is used to handle various events.
    */
   private final InternalListener m_listener = new InternalListener();
+  /**
+   * Moves notifications of the data provider onto the EDT, so data can be
+   * changed from any thread.
+   */
+  private final DataChangedDispatcher m_dataListener = new DataChangedDispatcher(m_listener);
 
   //<editor-fold defaultstate="collapsed" desc="Actions">
   /**
@@ -395,6 +528,21 @@ public final class JHexView extends JComponent
    */
   private final ActionTab m_tabAction = new ActionTab();
 
+  /**
+   * Action that's executed when the user presses the insert key.
+   */
+  private final ActionInsert m_insertAction = new ActionInsert();
+
+  /**
+   * Action that's executed when the user presses the delete key.
+   */
+  private final ActionDelete m_deleteAction = new ActionDelete(false);
+
+  /**
+   * Action that's executed when the user presses the backspace key.
+   */
+  private final ActionDelete m_backspaceAction = new ActionDelete(true);
+
   /**
    * Action that's executed when the user presses the shortcut ctrl+A.
    */
@@ -877,6 +1025,35 @@ public final class JHexView extends JComponent
     repaint();
   }
 
+  /**
+   * Sets special colors for many ranges of bytes of the same size at once, for
+   * example, for all results of {@link #findAllHex(long, byte[]) search}.
+   * Component is repainted once, so colorizing of thousands of ranges is cheap.
+   *
+   * @param level Priority level at which specified color ranges must be added.
+   *        Ranges with lowest level has priority
+   * @param offsets The start offsets of the byte ranges in any order. The meaningful
+   *        values live in range {@code [0; getData().getDataLength())}
+   * @param size The number of bytes in each range
+   * @param color The text color that is used to color that ranges
+   * @param bgcolor The background color that is used to color that ranges
+   *
+   * @throws IllegalArgumentException If {@code level} not in range {@code [0; 9]},
+   *         any offset is negative, {@code size} is not positive
+   *
+   * @see #colorize(int, long, int, Color, Color)
+   * @since 2.2
+   */
+  public void colorize(int level, long[] offsets, int size, Color color, Color bgcolor)
+  {
+    long min = 0;
+    for (final long offset : offsets) {
+      min = Math.min(min, offset);
+    }
+    getColoredRange(level, min, size).addRanges(offsets, size, color, bgcolor);
+    repaint();
+  }
+
   /**
    * Removes special colorization from a range of bytes.
    *
@@ -1063,7 +1240,7 @@ public final class JHexView extends JComponent
    * @return {@code true} if the data at the specified {@code offset} has been modified
    *         by the user, {@code false} otherwise.
    */
-  public boolean isModified(long offset) { return m_modifiedOffsets.containsKey(offset); }
+  public boolean isModified(long offset) { return m_modifiedOffsets.get(offset) > 0; }
 
   /**
    * Returns the number of modifications done to the data at the specified offset.
@@ -1072,11 +1249,7 @@ public final class JHexView extends JComponent
    *
    * @return Number of modifications done to the data at the specified offset.
    */
-  public int getModifiedCount(long offset)
-  {
-    final Integer value = m_modifiedOffsets.get(offset);
-    return value != null ? value.intValue() : 0;
-  }
+  public int getModifiedCount(long offset) { return m_modifiedOffsets.get(offset); }
 
   /**
    * Returns all offsets of data that has been modified by the user.
@@ -1084,19 +1257,7 @@ public final class JHexView extends JComponent
    * @return An array of offsets of modified data. Each offset in range
    *         {@code [0; getData().getDataLength())}
    */
-  public long[] getModifiedOffsets()
-  {
-    final long[] retVal = new long[m_modifiedOffsets.size()];
-    if (!m_modifiedOffsets.isEmpty()) {
-      int i = 0;
-      Iterator<Long> iter = m_modifiedOffsets.keySet().iterator();
-      while (iter.hasNext()) {
-        retVal[i] = iter.next().longValue();
-        i++;
-      }
-    }
-    return retVal;
-  }
+  public long[] getModifiedOffsets() { return m_modifiedOffsets.toArray(); }
 
   /** Clears all offsets that have been marked as modified. */
   public void clearModified()
@@ -1122,15 +1283,9 @@ public final class JHexView extends JComponent
    */
   private boolean clearModified(long offset, boolean forceRemove)
   {
-    final Long key = Long.valueOf(offset);
-    final Integer value = m_modifiedOffsets.get(key);
-    if (value != null) {
-      final int newCount = value.intValue() - 1;
-      if (!forceRemove && newCount > 0) {
-        m_modifiedOffsets.put(key, newCount);
-      } else {
-        m_modifiedOffsets.remove(key);
-      }
+    final int value = m_modifiedOffsets.get(offset);
+    if (value > 0) {
+      m_modifiedOffsets.set(offset, forceRemove ? 0 : value - 1);
       return true;
     }
     return false;
@@ -1148,15 +1303,45 @@ public final class JHexView extends JComponent
   {
     int retVal = 0;
     if (offset >= 0L) {
-      Long key = Long.valueOf(offset);
-      Integer value = m_modifiedOffsets.get(key);
-      if (value != null) {
-        retVal = value.intValue();
-      }
-      m_modifiedOffsets.put(key, retVal + 1);
+      retVal = m_modifiedOffsets.get(offset);
+      m_modifiedOffsets.set(offset, retVal + 1);
     }
     return retVal;
   }
+  /**
+   * Marks or unmarks as modified all bytes, written by the transaction.
+   *
+   * @param transaction Committed transaction
+   * @param modified If {@code true}, increments count of modifications of each
+   *        written byte, otherwise decrements it
+   */
+  private void setModified(DataTransaction transaction, boolean modified)
+  {
+    final long length = getDataLength();
+    for (int i = 0; i < transaction.getWriteCount(); ++i) {
+      final long offset = transaction.getOffset(i);
+      final long end = Math.min(offset + transaction.getLength(i), length);
+      for (long o = offset; o < end; ++o) {
+        if (modified) {
+          setModified(o);
+        } else {
+          clearModified(o, false);
+        }
+      }
+    }
+  }
+  /**
+   * Moves offsets of modified data after insertion or removing of data.
+   * Offsets of removed data are forgotten.
+   *
+   * @param offset The position at which data is inserted or removed
+   * @param delta Count of inserted bytes, if positive, or count of removed
+   *        bytes, if negative
+   */
+  private void shiftModified(long offset, long delta)
+  {
+    m_modifiedOffsets.shift(offset, delta);
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="Properties">
@@ -1261,6 +1446,8 @@ public final class JHexView extends JComponent
     }
     if (m_bytesPerRow != value) {
       m_bytesPerRow = value;
+      // Rows of pending requests have other numbers now
+      clearPendingRows();
       repaint();
     }
   }
@@ -1483,6 +1670,72 @@ public final class JHexView extends JComponent
     }
   }
 
+  /**
+   * Returns whether typed data is inserted at the caret position instead of
+   * overwriting existing data.
+   *
+   * @return {@code true}, if typed data is inserted, {@code false}, if it
+   *         overwrites existing data
+   *
+   * @see #setInsertMode
+   * @since 2.2
+   */
+  public boolean isInsertMode() { return m_insertMode; }
+  /**
+   * Sets whether typed data is inserted at the caret position or overwrites
+   * existing data. Data is inserted only if the current data provider is
+   * {@link IDataProvider#isResizable() resizable}, otherwise it is always
+   * overwritten. User can toggle mode by the Insert key.
+   * A PropertyChange event ("insertMode") is fired when the state is changed.
+   *
+   * @param insertMode {@code true}, to insert typed data, {@code false}, to
+   *        overwrite existing data
+   *
+   * @see #isInsertMode
+   * @since 2.2
+   */
+  public void setInsertMode(boolean insertMode)
+  {
+    if (insertMode != m_insertMode) {
+      m_insertMode = insertMode;
+      firePropertyChange("insertMode", Boolean.valueOf(!insertMode), Boolean.valueOf(insertMode));
+    }
+  }
+
+  /**
+   * Returns whether the view follows the end of data, when data grows.
+   *
+   * @return {@code true}, if the last rows are kept visible
+   *
+   * @see #setStickToEnd
+   * @since 2.2
+   */
+  public boolean isStickToEnd() { return m_stickToEnd; }
+  /**
+   * Sets whether the view follows the end of data, when data grows, for
+   * example, when a {@link GrowingFileDataProvider growing file} is shown.
+   * While the view is scrolled to the end, it is scrolled further, when data
+   * is appended. If the user scrolls the view up, it stays in place until it
+   * is scrolled to the end again. When mode is enabled, view is scrolled to
+   * the end immediately.
+   * A PropertyChange event ("stickToEnd") is fired when the state is changed.
+   *
+   * @param stickToEnd {@code true}, to keep the last rows visible
+   *
+   * @see #isStickToEnd
+   * @since 2.2
+   */
+  public void setStickToEnd(boolean stickToEnd)
+  {
+    if (stickToEnd != m_stickToEnd) {
+      m_stickToEnd = stickToEnd;
+      if (stickToEnd) {
+        scrollToRow(m_maxFirstRow);
+      }
+      firePropertyChange("stickToEnd", Boolean.valueOf(!stickToEnd), Boolean.valueOf(stickToEnd));
+    }
+  }
+
   /**
    * Enables or disables the component.
    *
@@ -1520,6 +1773,11 @@ public final class JHexView extends JComponent
    * Sets the current data provider.
    *
    * It is valid to pass null as the new data provider. This clears the display.
+   * <p>
+   * Data of the provider can be changed from any thread. Notifications about
+   * changes, made outside of the event dispatch thread, are merged and
+   * handled on the EDT at most once per {@link DataChangedDispatcher#DEFAULT_DELAY
+   * frame interval}.
    *
    * @param data The new data provider.
    */
@@ -1529,17 +1787,24 @@ public final class JHexView extends JComponent
      * Remove the data listener from the old data source.
      */
     if (m_dataProvider != null) {
-      m_dataProvider.removeListener(m_listener);
+      m_dataProvider.removeListener(m_dataListener);
     }
+    m_dataListener.clear();
 
     m_dataProvider = data;
+    setSearchIndex(null);
+    clearPendingRows();
+    m_hasMissingRows = false;
+    if (m_prefetcher != null) {
+      m_prefetcher.reset();
+    }
 
     /**
      * Add a data listener to the new data source so that the component can be
      * updated when the data changes.
      */
     if (data != null) {
-      data.addListener(m_listener);
+      data.addListener(m_dataListener);
     }
 
     setCurrentPosition(0);
@@ -1548,6 +1813,32 @@ public final class JHexView extends JComponent
     repaint();
   }
 
+  /**
+   * Starts a transaction for the current data provider. Writes, recorded in
+   * the transaction, are applied together by {@link DataTransaction#commit()}:
+   * the view is notified once, all written bytes are marked as modified and
+   * one undoable edit is registered for the whole transaction.
+   *
+   * @return New empty transaction
+   *
+   * @throws IllegalStateException If there is no data provider
+   *
+   * @since 2.2
+   */
+  public DataTransaction beginTransaction()
+  {
+    if (m_dataProvider == null) {
+      throw new IllegalStateException("No data provider active");
+    }
+    return new DataTransaction(m_dataProvider, transaction -> {
+      // Provider can be changed while transaction was filled
+      if (transaction.getProvider() == m_dataProvider) {
+        setModified(transaction, true);
+        fireUndoableEditListener(new TransactionEdit(transaction));
+      }
+    });
+  }
+
   /**
    * Returns the current base address.
    *
@@ -1582,9 +1873,51 @@ public final class JHexView extends JComponent
   public int getVisibleBytes()
   {
     final int maxVisible = getMaximumVisibleBytes();
-    final int visible = m_dataProvider.getDataLength() - (int)getFirstVisibleByte();
+    final long visible = getDataLength() - getFirstVisibleByte();
+
+    return visible >= maxVisible ? maxVisible : (int)visible;
+  }
 
-    return visible >= maxVisible ? maxVisible : visible;
+  /**
+   * Returns the count of screens, that are read ahead in the direction of scrolling.
+   *
+   * @return Count of screens or 0, if read ahead is disabled
+   *
+   * @since 2.2
+   */
+  public int getPrefetchScreens() { return m_prefetchScreens; }
+  /**
+   * Sets the count of screens, that are read ahead in the direction of scrolling
+   * or caret movement in the background thread, so data will be available, when
+   * the view will be scrolled. When scrolling is fast, more screens are read.
+   * <p>
+   * Read ahead is useful for providers, that read data from slow sources:
+   * {@link IAsyncDataProvider asynchronous providers} are asked to {@link IAsyncDataProvider#fetch
+   * fetch} data, other providers are asked to {@link IDataProvider#getData(long, byte[], int, int)
+   * read} it, which fills their caches. Such providers must support reading
+   * from a background thread.
+   *
+   * @param screens Count of screens to read ahead. {@code 0} disables read ahead
+   *
+   * @throws IllegalArgumentException If {@code screens} is negative
+   *
+   * @since 2.2
+   */
+  public void setPrefetchScreens(int screens)
+  {
+    if (screens < 0) {
+      throw new IllegalArgumentException("Count of prefetched screens can't be negative: " + screens);
+    }
+    m_prefetchScreens = screens;
+    if (screens == 0) {
+      if (m_prefetcher != null) {
+        m_prefetcher.shutdown();
+        m_prefetcher = null;
+      }
+    } else
+    if (m_prefetcher == null) {
+      m_prefetcher = new DataPrefetcher();
+    }
   }
   //</editor-fold>
 
@@ -1628,7 +1961,7 @@ public final class JHexView extends JComponent
       return;
     }
 
-    final long end = m_baseAddress + m_dataProvider.getDataLength();
+    final long end = m_baseAddress + getDataLength();
     if (offset < m_baseAddress || offset > end) {
       throw new IllegalArgumentException("Invalid offset 0x" + Long.toHexString(offset)
         + ", must be in range [0x" + Long.toHexString(m_baseAddress)
@@ -1638,6 +1971,55 @@ public final class JHexView extends JComponent
 
     setCurrentPosition(2 * (offset - m_baseAddress));
   }
+
+  /**
+   * Moves the caret to the start of the next mapped region, if current data
+   * provider is {@link ISparseDataProvider sparse}.
+   *
+   * @return {@code true}, if the caret was moved, {@code false}, if there is
+   *         no next region or data provider is not sparse
+   *
+   * @since 2.2
+   */
+  public boolean gotoNextRegion()
+  {
+    if (!(m_dataProvider instanceof ISparseDataProvider)) {
+      return false;
+    }
+    final long next = ((ISparseDataProvider)m_dataProvider).nextRegion(m_caret.getPosition() / 2);
+    if (next < 0) {
+      return false;
+    }
+    selectionModel.clearSelection();
+    setCurrentPosition(2 * next);
+    repaint();
+    return true;
+  }
+
+  /**
+   * Moves the caret to the start of the previous mapped region, if current data
+   * provider is {@link ISparseDataProvider sparse}. If the caret is inside
+   * a region, it is moved to the start of that region.
+   *
+   * @return {@code true}, if the caret was moved, {@code false}, if there is
+   *         no previous region or data provider is not sparse
+   *
+   * @since 2.2
+   */
+  public boolean gotoPreviousRegion()
+  {
+    if (!(m_dataProvider instanceof ISparseDataProvider)) {
+      return false;
+    }
+    final long previous = ((ISparseDataProvider)m_dataProvider).previousRegion(m_caret.getPosition() / 2);
+    if (previous < 0) {
+      return false;
+    }
+    selectionModel.clearSelection();
+    setCurrentPosition(2 * previous);
+    repaint();
+    return true;
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="Shortcuts">
@@ -1759,6 +2141,70 @@ public final class JHexView extends JComponent
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="Search/Goto">
+  /**
+   * Returns whether data is searched by several threads.
+   *
+   * @return {@code true}, if search is parallel
+   *
+   * @see #setParallelSearch
+   * @since 2.2
+   */
+  public boolean isParallelSearch() { return m_parallelSearch; }
+  /**
+   * Sets whether {@link #findAscii(long, String, boolean)} and {@link #findHex(long, byte[])}
+   * scan segments of big data in parallel in the {@link java.util.concurrent.ForkJoinPool#commonPool()
+   * common pool}. Parallel search is faster on multi-core machines, but
+   * requires the data provider to support reading from several threads.
+   * A PropertyChange event ("parallelSearch") is fired when the state is changed.
+   *
+   * @param parallelSearch {@code true}, to search in parallel
+   *
+   * @see SearchEngine#findParallel(long, long, byte[], boolean)
+   * @since 2.2
+   */
+  public void setParallelSearch(boolean parallelSearch)
+  {
+    if (parallelSearch != m_parallelSearch) {
+      m_parallelSearch = parallelSearch;
+      firePropertyChange("parallelSearch", Boolean.valueOf(!parallelSearch), Boolean.valueOf(parallelSearch));
+    }
+  }
+
+  /**
+   * Returns index of the current data, that is used by search.
+   *
+   * @return Index of data or {@code null}, if search scans data
+   *
+   * @see #setSearchIndex
+   * @since 2.2
+   */
+  public NgramIndex getSearchIndex() { return m_searchIndex; }
+  /**
+   * Sets index of the current data, that is used by search methods to scan
+   * only blocks of data, where the searched keyword can be. Index is reset,
+   * when data or provider is changed. A PropertyChange event ("searchIndex")
+   * is fired when the index is changed.
+   *
+   * @param index Index of the current data or {@code null}, to search without index
+   *
+   * @throws IllegalArgumentException If index was {@link NgramIndex#isValidFor
+   *         built for other data}
+   *
+   * @see NgramIndex#buildAsync
+   * @since 2.2
+   */
+  public void setSearchIndex(NgramIndex index)
+  {
+    if (index != null && (m_dataProvider == null || !index.isValidFor(m_dataProvider))) {
+      throw new IllegalArgumentException("Index was built for other data");
+    }
+    final NgramIndex old = m_searchIndex;
+    if (index != old) {
+      m_searchIndex = index;
+      firePropertyChange("searchIndex", old, index);
+    }
+  }
+
   /**
    * Attempts to find the next occurrence of keyword in the ascii view of the data,
    * starting at the specified offset.
@@ -1800,14 +2246,11 @@ public final class JHexView extends JComponent
       if (keyword == null) {
         throw new NullPointerException("String for search must not be null");
       }
-      // converting string into byte array
-      final byte[] pattern = new byte[keyword.length()];
-      for (int i = 0; i < pattern.length; i++) {
-        pattern[i] = (byte)(keyword.charAt(i) & 0xFF);
+      if (keyword.isEmpty()) {
+        return offset;
       }
-
-      final long len = getData().getDataLength() - offset;
-      return findIndexOf(offset, len, pattern, caseSensitive);
+      final long len = getDataLength() - offset;
+      return findIndexOf(offset, len, new BoyerMooreMatcher(toPattern(keyword), caseSensitive));
     }
     return -1;
   }
@@ -1851,34 +2294,438 @@ public final class JHexView extends JComponent
       if (keyword == null) {
         throw new NullPointerException("Byte array for search must not be null");
       }
-      final long len = getData().getDataLength() - offset;
-      return findIndexOf(offset, len, keyword, false);
+      if (keyword.length == 0) {
+        return offset;
+      }
+      final long len = getDataLength() - offset;
+      return findIndexOf(offset, len, new BoyerMooreMatcher(keyword, true));
     }
     return -1;
   }
 
   /**
-   * Scrolls to a given offset.
+   * Attempts to find the previous occurrence of keyword in the ascii view of
+   * the data, that starts before the specified offset. Data is read backward
+   * from the offset, so the nearest occurrence is found without scanning the
+   * beginning of the data.
    *
-   * @param offset The offset in bytes to scroll to in range
-   *        {@code [getBaseAddress(); getBaseAddress() + getData().getDataLength())}
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param keyword The keyword to search
+   * @param caseSensitive Indicates whether to search case sensitive
    *
-   * @throws IllegalArgumentException If the offset is out of bounds.
+   * @return The offset of the match in range {@code [0; getData().getDataLength())},
+   *         or -1 if no match has been found
    *
-   * @deprecated Use {@link #setCurrentOffset}. Will be removed in 3.0
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   *
+   * @since 2.2
    */
-  @Deprecated
-  public void gotoOffset(final long offset)
+  public long findPreviousAscii(long offset, String keyword, boolean caseSensitive)
   {
-    if (m_dataProvider == null) {
-      throw new IllegalStateException("No data provider active");
+    if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+      if (keyword == null) {
+        throw new NullPointerException("String for search must not be null");
+      }
+      if (keyword.isEmpty()) {
+        return offset;
+      }
+      return findLastIndexOf(offset, new BoyerMooreMatcher(toPattern(keyword), caseSensitive));
     }
-    setCurrentOffset(offset);
+    return -1;
   }
-  //</editor-fold>
 
-  @Override
-  protected void paintComponent(final Graphics gx)
+  /**
+   * Attempts to find the previous occurrence of keyword in the hex view of
+   * the data, that starts before the specified offset. Data is read backward
+   * from the offset, so the nearest occurrence is found without scanning the
+   * beginning of the data.
+   *
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param keyword The keyword to search
+   *
+   * @return The offset of the match in range {@code [0; getData().getDataLength())},
+   *         or -1 if no match has been found
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long findPreviousHex(long offset, byte[] keyword)
+  {
+    if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+      if (keyword == null) {
+        throw new NullPointerException("Byte array for search must not be null");
+      }
+      if (keyword.length == 0) {
+        return offset;
+      }
+      return findLastIndexOf(offset, new BoyerMooreMatcher(keyword, true));
+    }
+    return -1;
+  }
+
+  /**
+   * Finds all occurrences of keyword in the ascii view of the data, starting
+   * at the specified offset. Use {@link #colorize(int, long[], int, Color, Color)}
+   * to highlight found occurrences.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param keyword The keyword to search
+   * @param caseSensitive Indicates whether to search case sensitive
+   *
+   * @return The offsets of the matches in increasing order, empty if no match
+   *         has been found or data is not defined
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long[] findAllAscii(long offset, String keyword, boolean caseSensitive)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("String for search must not be null");
+    }
+    if (getDefinitionStatus() != DefinitionStatus.DEFINED || keyword.isEmpty()) {
+      return new long[0];
+    }
+    return findAll(offset, new BoyerMooreMatcher(toPattern(keyword), caseSensitive));
+  }
+
+  /**
+   * Finds all occurrences of keyword in the hex view of the data, starting
+   * at the specified offset. Use {@link #colorize(int, long[], int, Color, Color)}
+   * to highlight found occurrences.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param keyword The keyword to search
+   *
+   * @return The offsets of the matches in increasing order, empty if no match
+   *         has been found or data is not defined
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long[] findAllHex(long offset, byte[] keyword)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("Byte array for search must not be null");
+    }
+    if (getDefinitionStatus() != DefinitionStatus.DEFINED || keyword.length == 0) {
+      return new long[0];
+    }
+    return findAll(offset, new BoyerMooreMatcher(keyword, true));
+  }
+
+  /**
+   * Finds all occurrences of a number in the data, starting at the specified
+   * offset, in all requested encodings at once, for example, 32-bit integer
+   * in both byte orders and float.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param value The number with its encodings
+   * @param aligned If {@code true}, only encodings at offsets, that are multiples
+   *        of size of their type, are found
+   * @param listener Receiver of offsets and encodings of found occurrences
+   *
+   * @return Count of found occurrences, 0 if data is not defined
+   *
+   * @throws NullPointerException If {@code value} or {@code listener} is {@code null}
+   *
+   * @see SearchEngine#findValues
+   * @since 2.2
+   */
+  public long findValues(long offset, ValuePattern value, boolean aligned, IValueMatchListener listener)
+  {
+    if (value == null) {
+      throw new NullPointerException("Value for search must not be null");
+    }
+    if (getDefinitionStatus() != DefinitionStatus.DEFINED) {
+      return 0;
+    }
+    return getSearchEngine().findValues(offset, getDataLength(), value, aligned, listener);
+  }
+
+  /**
+   * Starts search of the next occurrence of keyword in the ascii view of the
+   * data on a worker thread. Progress of search is drawn over the header of
+   * the component. When the match is found, it is selected and the caret is
+   * moved to it. Search, started earlier, is cancelled.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param keyword The keyword to search
+   * @param caseSensitive Indicates whether to search case sensitive
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findAsciiInBackground(long offset, String keyword, boolean caseSensitive)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("String for search must not be null");
+    }
+    checkDefined();
+    return startSearch(new SearchTask(m_dataProvider, offset, getDataLength(), toPattern(keyword), caseSensitive, m_parallelSearch));
+  }
+
+  /**
+   * Starts search of the previous occurrence of keyword in the ascii view of
+   * the data, that starts before the specified offset, on a worker thread.
+   * Progress of search is drawn over the header of the component. When the
+   * match is found, it is selected and the caret is moved to it. Search,
+   * started earlier, is cancelled.
+   *
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param keyword The keyword to search
+   * @param caseSensitive Indicates whether to search case sensitive
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findPreviousAsciiInBackground(long offset, String keyword, boolean caseSensitive)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("String for search must not be null");
+    }
+    checkDefined();
+    final byte[] pattern = toPattern(keyword);
+    return startBackwardSearch(new SearchTask(m_dataProvider, 0, offset + Math.max(pattern.length - 1, 0),
+                                              pattern, caseSensitive, false));
+  }
+
+  /**
+   * Starts search of the previous occurrence of keyword in the hex view of
+   * the data, that starts before the specified offset, on a worker thread.
+   * Progress of search is drawn over the header of the component. When the
+   * match is found, it is selected and the caret is moved to it. Search,
+   * started earlier, is cancelled.
+   *
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param keyword The keyword to search
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findPreviousHexInBackground(long offset, byte[] keyword)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("Byte array for search must not be null");
+    }
+    checkDefined();
+    return startBackwardSearch(new SearchTask(m_dataProvider, 0, offset + Math.max(keyword.length - 1, 0),
+                                              keyword, true, false));
+  }
+
+  /**
+   * Starts search of the next occurrence of keyword in the hex view of the
+   * data on a worker thread. Progress of search is drawn over the header of
+   * the component. When the match is found, it is selected and the caret is
+   * moved to it. Search, started earlier, is cancelled.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param keyword The keyword to search
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code keyword} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findHexInBackground(long offset, byte[] keyword)
+  {
+    if (keyword == null) {
+      throw new NullPointerException("Byte array for search must not be null");
+    }
+    checkDefined();
+    return startSearch(new SearchTask(m_dataProvider, offset, getDataLength(), keyword, true, m_parallelSearch));
+  }
+
+  /**
+   * Attempts to find the next occurrence of pattern with masks in the hex view
+   * of the data, starting at the specified offset. Pattern can contain bytes and
+   * nibbles with any value, for example, {@code BytePattern.parse("E8 ?? ?? ?? ?? 48 8B ?5")}.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param pattern The pattern to search
+   *
+   * @return The offset of the match in range {@code [0; getData().getDataLength())},
+   *         or -1 if no match has been found
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long findPattern(long offset, BytePattern pattern)
+  {
+    if (pattern == null) {
+      throw new NullPointerException("Pattern for search must not be null");
+    }
+    if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+      final long len = getDataLength() - offset;
+      return findIndexOf(offset, len, new MaskedMatcher(pattern));
+    }
+    return -1;
+  }
+
+  /**
+   * Attempts to find the previous occurrence of pattern with masks in the hex
+   * view of the data, that starts before the specified offset. Data is read
+   * backward from the offset.
+   *
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param pattern The pattern to search
+   *
+   * @return The offset of the match in range {@code [0; getData().getDataLength())},
+   *         or -1 if no match has been found
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long findPreviousPattern(long offset, BytePattern pattern)
+  {
+    if (pattern == null) {
+      throw new NullPointerException("Pattern for search must not be null");
+    }
+    if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+      return findLastIndexOf(offset, new MaskedMatcher(pattern));
+    }
+    return -1;
+  }
+
+  /**
+   * Finds all occurrences of pattern with masks in the hex view of the data,
+   * starting at the specified offset. Use {@link #colorize(int, long[], int, Color, Color)}
+   * to highlight found occurrences.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param pattern The pattern to search
+   *
+   * @return The offsets of the matches in increasing order, empty if no match
+   *         has been found or data is not defined
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   *
+   * @since 2.2
+   */
+  public long[] findAllPattern(long offset, BytePattern pattern)
+  {
+    if (pattern == null) {
+      throw new NullPointerException("Pattern for search must not be null");
+    }
+    if (getDefinitionStatus() != DefinitionStatus.DEFINED) {
+      return new long[0];
+    }
+    return findAll(offset, new MaskedMatcher(pattern));
+  }
+
+  /**
+   * Starts search of the next occurrence of pattern with masks in the hex view
+   * of the data on a worker thread. Progress of search is drawn over the header
+   * of the component. When the match is found, it is selected and the caret is
+   * moved to it. Search, started earlier, is cancelled.
+   *
+   * @param offset The start offset for the search in range {@code [0; getData().getDataLength())}
+   * @param pattern The pattern to search
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findPatternInBackground(long offset, BytePattern pattern)
+  {
+    if (pattern == null) {
+      throw new NullPointerException("Pattern for search must not be null");
+    }
+    checkDefined();
+    return startSearch(new SearchTask(m_dataProvider, offset, getDataLength(), pattern, m_parallelSearch));
+  }
+
+  /**
+   * Starts search of the previous occurrence of pattern with masks in the hex
+   * view of the data, that starts before the specified offset, on a worker thread.
+   * Progress of search is drawn over the header of the component. When the
+   * match is found, it is selected and the caret is moved to it. Search,
+   * started earlier, is cancelled.
+   *
+   * @param offset The offset in range {@code [0; getData().getDataLength()]},
+   *        before which the match must start
+   * @param pattern The pattern to search
+   *
+   * @return The started task, which can be used to track progress, cancel
+   *         search or get its result
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   * @throws IllegalStateException If data is not defined
+   *
+   * @since 2.2
+   */
+  public SearchTask findPreviousPatternInBackground(long offset, BytePattern pattern)
+  {
+    if (pattern == null) {
+      throw new NullPointerException("Pattern for search must not be null");
+    }
+    checkDefined();
+    return startBackwardSearch(new SearchTask(m_dataProvider, 0, offset + pattern.length() - 1, pattern, false));
+  }
+
+  /**
+   * Returns search, that runs in background.
+   *
+   * @return The running task or {@code null}, if there is no running search
+   *
+   * @since 2.2
+   */
+  public SearchTask getSearchTask() { return m_searchTask; }
+
+  /**
+   * Scrolls to a given offset.
+   *
+   * @param offset The offset in bytes to scroll to in range
+   *        {@code [getBaseAddress(); getBaseAddress() + getData().getDataLength())}
+   *
+   * @throws IllegalArgumentException If the offset is out of bounds.
+   *
+   * @deprecated Use {@link #setCurrentOffset}. Will be removed in 3.0
+   */
+  @Deprecated
+  public void gotoOffset(final long offset)
+  {
+    if (m_dataProvider == null) {
+      throw new IllegalStateException("No data provider active");
+    }
+    setCurrentOffset(offset);
+  }
+  //</editor-fold>
+
+  @Override
+  protected void paintComponent(final Graphics gx)
   {
     super.paintComponent(gx);
 
@@ -1914,6 +2761,15 @@ public final class JHexView extends JComponent
 
       final int bytesToDraw = getBytesToDraw();
 
+      m_hasMissingRows = false;
+      m_hasUnmappedBytes = false;
+      if (bytesToDraw != 0 && !m_dataProvider.hasData(getFirstVisibleByte(), bytesToDraw)
+       && m_dataProvider instanceof IAsyncDataProvider
+      ) {
+        // Asynchronous provider will notify us when data is ready. Until that
+        // rows without data are drawn as undefined
+        requestMissingRows((IAsyncDataProvider)m_dataProvider, bytesToDraw);
+      } else
       if (bytesToDraw != 0 && !m_dataProvider.hasData(getFirstVisibleByte(), bytesToDraw)) {
         // At this point the component wants to draw data but the data
         // provider does not have the data yet. The hope is that the data
@@ -1936,9 +2792,16 @@ public final class JHexView extends JComponent
 
         return;
       }
+      if (bytesToDraw != 0 && m_dataProvider instanceof ISparseDataProvider) {
+        findUnmappedBytes((ISparseDataProvider)m_dataProvider, bytesToDraw);
+      }
     }
 
     if (isDataAvailable() || m_status == DefinitionStatus.UNDEFINED) {
+      if (isDataAvailable() && m_status == DefinitionStatus.DEFINED) {
+        readVisibleData();
+      }
+
       // Draw the hex data
       drawHexView(gx);
 
@@ -1950,6 +2813,10 @@ public final class JHexView extends JComponent
         drawCaret((Graphics2D)gx);
       }
     }
+
+    if (m_searchTask != null) {
+      drawSearchProgress(gx);
+    }
   }
 
   //<editor-fold defaultstate="collapsed" desc="Private">
@@ -2027,7 +2894,7 @@ public final class JHexView extends JComponent
     }
 
     final int bytesToDraw;
-    if (m_status == DefinitionStatus.DEFINED && m_dataProvider.getDataLength() > 0) {
+    if (m_status == DefinitionStatus.DEFINED && getDataLength() > 0) {
       bytesToDraw = getBytesToDraw();
     } else {
       bytesToDraw = m_bytesPerRow;
@@ -2158,7 +3025,7 @@ public final class JHexView extends JComponent
     long dataOffset = getFirstVisibleByte();
     if (m_status == DefinitionStatus.DEFINED) {
       bytesToDraw = getBytesToDraw();
-      data = m_dataProvider.getData(dataOffset, bytesToDraw);
+      data = m_drawBuffer;
     } else {
       bytesToDraw = getMaximumVisibleBytes();
     }
@@ -2184,6 +3051,8 @@ public final class JHexView extends JComponent
         }
       }
 
+      final boolean defined = m_status == DefinitionStatus.DEFINED && !isByteMissing(i);
+
       if (isEnabled()) {
         // determine whether to colorize additional horizontal space before or after the value
         int preSpaceX = 0, postSpaceX = 0;
@@ -2214,7 +3083,7 @@ public final class JHexView extends JComponent
                        2 * m_charWidth + preSpaceX + postSpaceX, m_charMaxAscent + m_charMaxDescent);
             g.setColor(range.getColor());
           } else
-          if (m_colorMapEnabled && m_colormap != null && m_colormap.colorize(data[i], dataOffset)) {
+          if (defined && m_colorMapEnabled && m_colormap != null && m_colormap.colorize(data[i], dataOffset)) {
             final Color backgroundColor = m_colormap.getBackgroundColor(data[i], dataOffset);
             final Color foregroundColor = isShowModified() && isModified(dataOffset)
               ? m_fontColorModified
@@ -2243,9 +3112,9 @@ public final class JHexView extends JComponent
         g.setColor(m_disabledColor != m_bgColorHex ? m_disabledColor : Color.WHITE);
       }
 
-      if (m_status == DefinitionStatus.DEFINED) {
+      if (defined) {
         // Number of bytes shown in the current column
-        final int columnBytes = Math.min(m_dataProvider.getDataLength() - i, m_bytesPerColumn);
+        final int columnBytes = Math.min(bytesToDraw - i + i % m_bytesPerColumn, m_bytesPerColumn);
 
         final int dataPosition = m_flipBytes ? (i / m_bytesPerColumn) * m_bytesPerColumn
             + (columnBytes - (i % columnBytes) - 1) : i;
@@ -2297,7 +3166,7 @@ public final class JHexView extends JComponent
 
     if (m_status == DefinitionStatus.DEFINED) {
       bytesToDraw = getBytesToDraw();
-      data = m_dataProvider.getData(dataOffset, bytesToDraw);
+      data = m_drawBuffer;
     } else {
       bytesToDraw = getMaximumVisibleBytes();
     }
@@ -2310,7 +3179,7 @@ public final class JHexView extends JComponent
         y += m_rowHeight;
       }
 
-      if (m_status == DefinitionStatus.DEFINED) {
+      if (m_status == DefinitionStatus.DEFINED && !isByteMissing(i)) {
         final byte b = data[i];
 
         if (isEnabled()) {
@@ -2383,7 +3252,7 @@ public final class JHexView extends JComponent
   {
     final long first = getFirstVisibleByte();
     if (m_caret.getPosition() < 2 * first
-     || getCurrentColumn() > first + getMaximumVisibleBytes()
+     || m_caret.getPosition() > 2 * (first + getMaximumVisibleBytes())
     ) {
       return;
     }
@@ -2401,7 +3270,7 @@ public final class JHexView extends JComponent
    */
   private void drawCaretHexWindow(Graphics2D g, boolean showCaret)
   {
-    final int currentRow = getCurrentRow() - m_firstRow;
+    final int currentRow = (int)(getCurrentRow() - m_firstRow);
     final int currentColumn = getCurrentColumn();
 
     // Calculate the position of the first character in the row.
@@ -2438,7 +3307,7 @@ public final class JHexView extends JComponent
    */
   private void drawCaretAsciiWindow(Graphics2D g, boolean showCaret)
   {
-    final int currentRow = getCurrentRow() - m_firstRow;
+    final int currentRow = (int)(getCurrentRow() - m_firstRow);
     final int currentColumn = getCurrentColumn();
     final int currentCharacter = currentColumn / 2;
 
@@ -2505,7 +3374,7 @@ public final class JHexView extends JComponent
     if (pos < 0) {
       newPos = 0;
     } else {
-      final int nibbleCount = 2 * m_dataProvider.getDataLength();
+      final long nibbleCount = 2 * getDataLength();
       newPos = pos < nibbleCount ? pos : nibbleCount;
     }
     if (expandSelection) {
@@ -2523,6 +3392,9 @@ public final class JHexView extends JComponent
       selectionModel.clearSelection();
     }
     m_caret.setPosition(newPos);
+    if (m_prefetcher != null) {
+      m_prefetcher.caretMoved(newPos - oldPos);
+    }
 
     if (newPos < 2 * getFirstVisibleByte()) {
       scrollToPosition(newPos);
@@ -2536,143 +3408,169 @@ public final class JHexView extends JComponent
   }
 
   /**
-   * Based on reference implementation from
-   *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
-   *
    * Returns the start index of the first occurrence of the specified pattern.
    * If the pattern is not found, then -1 is returned.
    *
    * @param startPos The position within the data to start searching in range
    *        {@code [0; getData().getDataLength())}.
    * @param length The length of the data section to search.
-   * @param pattern The pattern to search.
-   * @param caseSensitive Indicates whether to compare case-sensitive or not.
+   * @param matcher The search algorithm.
    *
    * @return The start index of the first match, or -1 otherwise.
    */
-  private long findIndexOf(long startPos, long length, byte[] pattern, boolean caseSensitive)
+  private long findIndexOf(long startPos, long length, Matcher matcher)
   {
-    if (pattern.length == 0) {
-      return startPos;
-    }
-
-    final IDataProvider data = getData();
-
-    final int dataLength = data.getDataLength();
     if (startPos < 0) startPos = 0;
-    if (length < 0) length = 0;
-    if (startPos+length > dataLength) length = dataLength - startPos;
     if (length <= 0) {
       return -1;
     }
-
-    // normalizing search string
-    for (int i = 0; i < pattern.length; i++) {
-      pattern[i] = normalizeByte(pattern[i], caseSensitive);
-    }
-
-    int[] byteTable = findMakeByteTable(pattern);
-    int[] offsetTable = findMakeOffsetTable(pattern);
-    int j;
-    for (long off = startPos + pattern.length - 1; off < startPos+length;) {
-      byte b;
-      for (j = pattern.length - 1;
-           pattern[j] == (b = normalizeByte(data.getData(off, 1)[0], caseSensitive));
-           --off, --j) {
-        if (j == 0) {
-          return off;
-        }
-      }
-      off += Math.max(offsetTable[pattern.length - 1 - j], byteTable[b & 0xFF]);
+    if (m_parallelSearch) {
+      return getSearchEngine().findParallel(startPos, startPos + length, matcher, ForkJoinPool.commonPool());
     }
-    return -1;
+    return getSearchEngine().find(startPos, startPos + length, matcher);
   }
 
   /**
-   * Converts the specified byte value into a lower-cased counterpart if caseSensitive is false.
+   * Returns the start index of the last occurrence of the pattern, that starts
+   * before the specified position. If the pattern is not found, then -1 is returned.
+   *
+   * @param endPos The position within the data, before which match must start
+   * @param matcher The search algorithm
+   *
+   * @return The start index of the last match, or -1 otherwise
    */
-  private byte normalizeByte(byte value, boolean caseSensitive)
+  private long findLastIndexOf(long endPos, Matcher matcher)
   {
-    if (!caseSensitive) {
-      final char ch = toChar(value);
-      if (isPrintableCharacter(ch)) {
-        final char chLo = Character.toLowerCase(ch);
-        return (byte)(chLo < 0x80 ? chLo : '?');
-      }
+    if (endPos <= 0) {
+      return -1;
     }
-    return value;
+    return getSearchEngine().findLast(0, endPos + matcher.length() - 1, matcher);
+  }
+
+  /**
+   * Returns offsets of all occurrences of the pattern, starting at the specified offset.
+   *
+   * @param startPos The position within the data to start searching
+   * @param matcher The search algorithm
+   *
+   * @return The offsets of all matches in increasing order
+   */
+  private long[] findAll(long startPos, Matcher matcher)
+  {
+    return getSearchEngine().findAll(startPos, getDataLength(), matcher);
   }
 
   /**
-   * Based on reference implementation from
-   *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
+   * Checks, that data for search is available.
    *
-   * Makes the jump table based on the mismatched byte information.
+   * @throws IllegalStateException If data is not defined
    */
-  private int[] findMakeByteTable(byte[] pattern)
+  private void checkDefined()
   {
-    int[] table = new int[256];
-    for (int i = 0; i < table.length; i++) {
-      table[i] = pattern.length;
+    if (getDefinitionStatus() != DefinitionStatus.DEFINED || m_dataProvider == null) {
+      throw new IllegalStateException("Data is not defined");
     }
-    for (int i = 0; i < pattern.length - 1; i++) {
-      table[pattern[i] & 255] = pattern.length - 1 - i;
-    }
-    return table;
   }
 
   /**
-   * Based on reference implementation from
-   *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
+   * Starts backward search in background and shows its result, when it finishes.
+   *
+   * @param task The task to start
+   *
+   * @return The started task
+   */
+  private SearchTask startBackwardSearch(SearchTask task)
+  {
+    task.setBackward(true);
+    return startSearch(task);
+  }
+
+  /**
+   * Starts search in background and shows its result, when it finishes.
    *
-   * Makes the jump table based on the scan offset which mismatch occurs.
+   * @param task The task to start
+   *
+   * @return The started task
    */
-  private int[] findMakeOffsetTable(byte[] pattern)
+  private SearchTask startSearch(final SearchTask task)
   {
-    int[] table = new int[pattern.length];
-    int lastPrefixPos = pattern.length;
-    for (int i = pattern.length - 1; i >= 0; i--) {
-      if (findIsPrefix(pattern, i + 1)) {
-        lastPrefixPos = i + 1;
-      }
-      table[pattern.length - 1 - i] = lastPrefixPos - i + pattern.length - 1;
+    if (m_searchTask != null) {
+      m_searchTask.cancel(false);
     }
-    for (int i = 0; i < pattern.length - 1; i++) {
-      int slen = findSuffixLength(pattern, i);
-      table[slen] = pattern.length - 1 - i + slen;
+    final IDataProvider data = m_dataProvider;
+    if (m_searchIndex != null) {
+      task.setIndex(m_searchIndex);
     }
-    return table;
+    task.addPropertyChangeListener(new PropertyChangeListener()
+    {
+      @Override
+      public void propertyChange(PropertyChangeEvent event)
+      {
+        if ("progress".equals(event.getPropertyName())) {
+          repaint(0, 0, getWidth(), getHeaderHeight());
+        } else
+        if ("state".equals(event.getPropertyName()) && event.getNewValue() == SwingWorker.StateValue.DONE) {
+          if (m_searchTask == task) {
+            m_searchTask = null;
+            repaint(0, 0, getWidth(), getHeaderHeight());
+          }
+          final long offset = task.getResult();
+          // Show the match only if data was not changed while searching, otherwise
+          // offset can point to other bytes, for example, after insertion of data
+          final boolean unchanged = m_dataProvider == data
+            && (!(data instanceof ISnapshotDataProvider)
+             || ((ISnapshotDataProvider)data).getVersion() == task.getDataVersion());
+          if (offset >= 0 && unchanged && offset < getDataLength()) {
+            setCurrentPosition(2 * offset);
+            selectionModel.setSelectionInterval(2 * offset, 2 * (offset + task.getPatternLength()) - 1);
+            repaint();
+          }
+        }
+      }
+    });
+    m_searchTask = task;
+    task.execute();
+    return task;
   }
 
   /**
-   * Based on reference implementation from
-   *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
+   * Draws progress of the {@link #m_searchTask background search} over the header.
    *
-   * Is pattern[p:end] a prefix of pattern?
+   * @param g The graphics context of the hex panel.
    */
-  private boolean findIsPrefix(byte[] pattern, int p)
+  private void drawSearchProgress(final Graphics g)
   {
-    for (int i = p, j = 0; i < pattern.length; i++, j++) {
-      if (pattern[i] != pattern[j]) {
-        return false;
-      }
+    final long total = m_searchTask.getTotal();
+    final double part = total == 0 ? 1 : Math.min(1, (double)m_searchTask.getProcessed() / total);
+    final int height = Math.max(2, m_paddingTop / 2);
+    g.setColor(m_selectionColor);
+    g.fillRect(0, 0, (int)(getWidth() * part), height);
+  }
+
+  /**
+   * Returns engine, that searches data of the current data provider.
+   */
+  private SearchEngine getSearchEngine()
+  {
+    if (m_searchEngine == null || m_searchEngine.getData() != m_dataProvider) {
+      m_searchEngine = new SearchEngine(m_dataProvider);
     }
-    return true;
+    if (m_searchEngine.getIndex() != m_searchIndex) {
+      m_searchEngine.setIndex(m_searchIndex);
+    }
+    return m_searchEngine;
   }
 
   /**
-   * Based on reference implementation from
-   *   https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore_string_search_algorithm
-   *
-   * Returns the maximum length of the subpattern ends at p and is a suffix.
+   * Converts string for search in the ascii view into array of bytes.
    */
-  private int findSuffixLength(byte[] pattern, int p)
+  private static byte[] toPattern(String keyword)
   {
-    int len = 0;
-    for (int i = p, j = pattern.length - 1; i >= 0 && pattern[i] == pattern[j]; i--, j--) {
-      len += 1;
+    final byte[] pattern = new byte[keyword.length()];
+    for (int i = 0; i < pattern.length; i++) {
+      pattern[i] = (byte)(keyword.charAt(i) & 0xFF);
     }
-    return len;
+    return pattern;
   }
 
   /**
@@ -2739,13 +3637,11 @@ public final class JHexView extends JComponent
    */
   private int getBytesToDraw()
   {
-    final int firstVisibleByte = (int)getFirstVisibleByte();
-
     final int maxBytes = getMaximumVisibleBytes() + m_bytesPerRow;
 
-    final int restBytes = m_dataProvider.getDataLength() - firstVisibleByte;
+    final long restBytes = getDataLength() - getFirstVisibleByte();
 
-    return Math.min(maxBytes, restBytes);
+    return (int)Math.max(0, Math.min(maxBytes, restBytes));
   }
 
   /**
@@ -2765,7 +3661,7 @@ public final class JHexView extends JComponent
    */
   private int getCurrentColumn()
   {
-    return (int) m_caret.getPosition() % (2 * m_bytesPerRow);
+    return (int)(m_caret.getPosition() % (2 * m_bytesPerRow));
   }
 
   /**
@@ -2773,23 +3669,33 @@ public final class JHexView extends JComponent
    *
    * @return The row of the byte at the current position.
    */
-  private int getCurrentRow()
+  private long getCurrentRow()
   {
-    return (int) m_caret.getPosition() / (2 * m_bytesPerRow);
+    return m_caret.getPosition() / (2 * m_bytesPerRow);
   }
 
   /**
-   * Returns the offset to first visible byte.
+   * Returns the length of the data in the current data provider.
    *
-   * @return Offset in range in range {@code [0; getData().getDataLength())}
+   * @return Length of the data in bytes or 0, if data provider is not set
    */
-  private long getFirstVisibleByte()
+  private long getDataLength()
   {
-    return m_firstRow * m_bytesPerRow;
+    return m_dataProvider == null ? 0 : m_dataProvider.getDataLengthLong();
   }
 
   /**
-   * Returns the height of the header panel.
+   * Returns the offset to first visible byte.
+   *
+   * @return Offset in range in range {@code [0; getData().getDataLength())}
+   */
+  private long getFirstVisibleByte()
+  {
+    return m_firstRow * m_bytesPerRow;
+  }
+
+  /**
+   * Returns the height of the header panel.
    */
   private int getHeaderHeight()
   {
@@ -2923,7 +3829,7 @@ public final class JHexView extends JComponent
                          + row * m_bytesPerRow
                          + normalizedX / m_charWidth;
 
-    return byteAtPos >= m_dataProvider.getDataLength() ? -1 : 2 * byteAtPos;
+    return byteAtPos >= getDataLength() ? -1 : 2 * byteAtPos;
   }
 
   /**
@@ -2969,7 +3875,7 @@ public final class JHexView extends JComponent
                          + column * m_bytesPerColumn;
     final long position = 2 * byteAtPos + nibbleInColumn;
 
-    return position >= 2 * m_dataProvider.getDataLength() ? -1 : position;
+    return position >= 2 * getDataLength() ? -1 : position;
   }
 
   /**
@@ -3061,6 +3967,15 @@ public final class JHexView extends JComponent
     inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, none), "TAB");
     actionMap.put("TAB", m_tabAction);
 
+    inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_INSERT, none), "INSERT");
+    actionMap.put("INSERT", m_insertAction);
+
+    inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, none), "DELETE");
+    actionMap.put("DELETE", m_deleteAction);
+
+    inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_BACK_SPACE, none), "BACK_SPACE");
+    actionMap.put("BACK_SPACE", m_backspaceAction);
+
     inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_A, ctrl), "ctrl A");
     actionMap.put("ctrl A", m_SelectAllAction);
 
@@ -3164,7 +4079,54 @@ public final class JHexView extends JComponent
    */
   private void scrollToPosition(final long position)
   {
-    m_scrollbar.setValue((int) position / (2 * m_bytesPerRow));
+    scrollToRow(position / (2 * m_bytesPerRow));
+  }
+
+  /**
+   * Scrolls the view so that specified row become the first visible row and
+   * updates the scroll bar accordingly.
+   *
+   * @param row The row to scroll to. Will be clamped to the allowed range
+   */
+  private void scrollToRow(long row)
+  {
+    if (row > m_maxFirstRow) {
+      row = m_maxFirstRow;
+    }
+    if (row < 0) {
+      row = 0;
+    }
+    if (row != m_firstRow) {
+      m_firstRow = row;
+      updateScrollbarValue();
+      prefetch();
+      repaint();
+    }
+  }
+
+  /**
+   * Notifies the {@link #m_prefetcher prefetcher} about change of the visible rows.
+   */
+  private void prefetch()
+  {
+    if (m_prefetcher != null && m_dataProvider != null) {
+      m_prefetcher.viewChanged(m_dataProvider, m_firstRow, getNumberOfVisibleRows(),
+                               m_bytesPerRow, m_prefetchScreens);
+    }
+  }
+
+  /**
+   * Sets value of the vertical scroll bar to the value, that represents the
+   * {@link #m_firstRow first visible row}.
+   */
+  private void updateScrollbarValue()
+  {
+    m_scrollbarSync = true;
+    try {
+      m_scrollbar.setValue((int)(m_firstRow / m_rowsPerScrollUnit));
+    } finally {
+      m_scrollbarSync = false;
+    }
   }
 
   /**
@@ -3190,15 +4152,18 @@ public final class JHexView extends JComponent
   private void setScrollBarMaximum()
   {
     if (m_dataProvider == null) {
+      m_maxFirstRow = 0;
+      m_rowsPerScrollUnit = 1;
       m_scrollbar.setMaximum(1);
       m_horizontalScrollbar.setMaximum(1);
     }
     else {
       final int visibleRows = getNumberOfVisibleRows();
 
-      final int totalRows = m_dataProvider.getDataLength() / m_bytesPerRow;
+      m_scrolledDataLength = getDataLength();
+      final long totalRows = m_scrolledDataLength / m_bytesPerRow;
       // 2 - Count of empty rows that can be scrolled down
-      int scrollRange = 2 + totalRows - visibleRows;
+      long scrollRange = 2 + totalRows - visibleRows;
 
       // If all rows visible, disable vertical scrollbar
       if (scrollRange < 0) {
@@ -3208,10 +4173,23 @@ public final class JHexView extends JComponent
         m_scrollbar.setEnabled(true);
       }
 
-      m_scrollbar.setValue(Math.min(m_scrollbar.getValue(), scrollRange));
-      m_scrollbar.setMaximum(scrollRange + visibleRows);
-      m_scrollbar.setVisibleAmount(visibleRows);
-      m_scrollbar.setBlockIncrement(visibleRows);
+      // Scale scrollbar model if count of rows does not fit into it
+      m_maxFirstRow = scrollRange;
+      m_rowsPerScrollUnit = (scrollRange + visibleRows) / MAX_SCROLL_UNITS + 1;
+      if (m_firstRow > scrollRange) {
+        m_firstRow = scrollRange;
+      }
+
+      final int visibleUnits = (int)Math.max(1, visibleRows / m_rowsPerScrollUnit);
+      final int rangeUnits   = (int)(scrollRange / m_rowsPerScrollUnit);
+      m_scrollbarSync = true;
+      try {
+        m_scrollbar.setValues((int)(m_firstRow / m_rowsPerScrollUnit), visibleUnits,
+                              0, rangeUnits + visibleUnits);
+      } finally {
+        m_scrollbarSync = false;
+      }
+      m_scrollbar.setBlockIncrement(visibleUnits);
 
       final int totalWidth = getAsciiViewLeft() + m_paddingAsciiLeft + m_charWidth * m_bytesPerRow;
 
@@ -3254,6 +4232,212 @@ public final class JHexView extends JComponent
     revalidate();
   }
 
+  /**
+   * Reads the visible data into the {@link #m_drawBuffer draw buffer}.
+   */
+  private void readVisibleData()
+  {
+    final int bytesToDraw = getBytesToDraw();
+    if (m_drawBuffer.length < bytesToDraw) {
+      m_drawBuffer = new byte[bytesToDraw];
+    }
+    final long first = getFirstVisibleByte();
+    if (!m_hasMissingRows) {
+      m_dataProvider.getData(first, m_drawBuffer, 0, bytesToDraw);
+      return;
+    }
+    // Read only rows that have data
+    for (int start = 0; start < bytesToDraw;) {
+      if (isRowMissing(start / m_bytesPerRow)) {
+        start += m_bytesPerRow;
+        continue;
+      }
+      int end = start + m_bytesPerRow;
+      while (end < bytesToDraw && !isRowMissing(end / m_bytesPerRow)) {
+        end += m_bytesPerRow;
+      }
+      end = Math.min(end, bytesToDraw);
+      m_dataProvider.getData(first + start, m_drawBuffer, start, end - start);
+      start = end;
+    }
+  }
+
+  /**
+   * Determines which visible rows have no data and requests data for them from
+   * the asynchronous provider. Rows, for which data already requested, are not
+   * requested again. When data arrives, only rows from the request are repainted.
+   *
+   * @param provider Provider to request data from
+   * @param bytesToDraw Count of visible bytes
+   */
+  private void requestMissingRows(final IAsyncDataProvider provider, int bytesToDraw)
+  {
+    final int rows = (bytesToDraw + m_bytesPerRow - 1) / m_bytesPerRow;
+    if (m_missingRows.length < rows) {
+      m_missingRows = new boolean[rows];
+    }
+    final long first = getFirstVisibleByte();
+    // Start of not yet requested span of missing rows, or -1
+    int spanStart = -1;
+    for (int row = 0; row <= rows; ++row) {
+      boolean request = false;
+      if (row < rows) {
+        final long offset = first + (long)row * m_bytesPerRow;
+        final int length = (int)Math.min(m_bytesPerRow, first + bytesToDraw - offset);
+        final boolean missing = !provider.hasData(offset, length);
+
+        m_missingRows[row] = missing;
+        if (missing) {
+          m_hasMissingRows = true;
+          request = !m_pendingRows.contains(m_firstRow + row);
+        }
+      }
+      if (request) {
+        if (spanStart < 0) {
+          spanStart = row;
+        }
+      } else
+      if (spanStart >= 0) {
+        fetchRows(provider, m_firstRow + spanStart, m_firstRow + row);
+        spanStart = -1;
+      }
+    }
+  }
+
+  /**
+   * Requests data for the rows from the asynchronous provider and repaints that
+   * rows when data arrives.
+   *
+   * @param provider Provider to request data from
+   * @param startRow The first row to request (inclusive)
+   * @param endRow The last row to request (exclusive)
+   */
+  private void fetchRows(final IAsyncDataProvider provider, final long startRow, final long endRow)
+  {
+    for (long row = startRow; row < endRow; ++row) {
+      m_pendingRows.add(row);
+    }
+    final long generation = m_pendingGeneration;
+    final long offset = startRow * m_bytesPerRow;
+    final int length = (int)Math.min((endRow - startRow) * m_bytesPerRow, getDataLength() - offset);
+    provider.fetch(offset, length).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+      // Provider can be changed while we wait for data
+      if (m_dataProvider != provider) {
+        return;
+      }
+      // Rows were renumbered while we wait for data, so repaint all of them
+      if (m_pendingGeneration != generation) {
+        if (error == null) {
+          repaint();
+        }
+        return;
+      }
+      for (long row = startRow; row < endRow; ++row) {
+        m_pendingRows.remove(row);
+      }
+      // On error rows will be requested again on the next repaint
+      if (error == null) {
+        repaintRows(startRow, endRow);
+      }
+    }));
+  }
+
+  /**
+   * Forgets rows, for which data was requested, so they will be requested
+   * again, if still missing, and ignores completion of that requests.
+   */
+  private void clearPendingRows()
+  {
+    m_pendingRows.clear();
+    ++m_pendingGeneration;
+  }
+
+  /**
+   * Determines which visible bytes are in gaps of the sparse data provider.
+   * Provider is asked once per region or gap, not for each byte.
+   *
+   * @param provider Provider which data is drawn
+   * @param bytesToDraw Count of visible bytes
+   */
+  private void findUnmappedBytes(final ISparseDataProvider provider, int bytesToDraw)
+  {
+    if (m_unmappedBytes.length < bytesToDraw) {
+      m_unmappedBytes = new boolean[bytesToDraw];
+    }
+    final long first = getFirstVisibleByte();
+    for (int i = 0; i < bytesToDraw;) {
+      final long offset = first + i;
+      final long regionEnd = provider.getRegionEnd(offset);
+      final boolean mapped = regionEnd >= 0;
+      long next = mapped ? regionEnd : provider.nextRegion(offset);
+      if (next < 0) {
+        next = first + bytesToDraw;
+      }
+      final int count = (int)Math.min(bytesToDraw - i, next - offset);
+      Arrays.fill(m_unmappedBytes, i, i + count, !mapped);
+      m_hasUnmappedBytes |= !mapped;
+      i += count;
+    }
+  }
+
+  /**
+   * Determines whether visible byte must be drawn as undefined, because its
+   * data is not available yet or it is not mapped.
+   *
+   * @param index Index of byte relative to the {@link #getFirstVisibleByte() first visible byte}
+   *
+   * @return {@code true}, if byte must be drawn as undefined
+   */
+  private boolean isByteMissing(int index)
+  {
+    return isRowMissing(index / m_bytesPerRow)
+        || m_hasUnmappedBytes && index < m_unmappedBytes.length && m_unmappedBytes[index];
+  }
+
+  /**
+   * Determines whether data for visible row is not available yet.
+   *
+   * @param row Index of row relative to the {@link #m_firstRow first visible row}
+   *
+   * @return {@code true}, if row must be drawn as undefined
+   */
+  private boolean isRowMissing(int row)
+  {
+    return m_hasMissingRows && row < m_missingRows.length && m_missingRows[row];
+  }
+
+  /**
+   * Repaints the specified rows, if they are visible.
+   *
+   * @param startRow The first row to repaint (inclusive)
+   * @param endRow The last row to repaint (exclusive)
+   */
+  private void repaintRows(long startRow, long endRow)
+  {
+    // Paint draws one row more than fully or partially visible rows, see getBytesToDraw()
+    final long lastVisibleRow = m_firstRow + getNumberOfVisibleRows() + 1;
+    final long start = Math.max(startRow, m_firstRow);
+    final long end   = Math.min(endRow, lastVisibleRow);
+    if (start >= end) {
+      return;
+    }
+    final int y = m_paddingTop + getHeaderHeight() - m_charHeight + (int)(start - m_firstRow) * m_rowHeight;
+    repaint(0, y, getWidth(), (int)(end - start) * m_rowHeight + m_charMaxDescent);
+  }
+
+  /**
+   * Reads one byte from the data provider without allocation of a new array.
+   *
+   * @param offset The data offset in range {@code [0; getData().getDataLength())}
+   *
+   * @return The byte at the specified offset
+   */
+  private byte readByte(long offset)
+  {
+    m_dataProvider.getData(offset, m_byteBuffer, 0, 1);
+    return m_byteBuffer[0];
+  }
+
   /**
    * Check if specified byte can be used to expand selection in ASCII view.
    *
@@ -3282,19 +4466,19 @@ public final class JHexView extends JComponent
     // Starting from initial position, find word delimiter characters in both directions
     long start = offset;
     long end = offset;
-    if (!needSkip(m_dataProvider.getData(offset, 1)[0])) {
+    if (!needSkip(readByte(offset))) {
       // find starting delimiter
       for (int i = 1; i < offset; i++) {
-        if (needSkip(m_dataProvider.getData(offset-i, 1)[0])) {
+        if (needSkip(readByte(offset-i))) {
           break;
         }
         start--;
       }
 
       // find ending delimiter
-      final long maxLength = m_dataProvider.getDataLength() - offset;
+      final long maxLength = getDataLength() - offset;
       for (int i = 1; i < maxLength; i++) {
-        if (needSkip(m_dataProvider.getData(offset+i, 1)[0])) {
+        if (needSkip(readByte(offset+i))) {
           break;
         }
         end++;
@@ -3305,6 +4489,200 @@ public final class JHexView extends JComponent
     selectionModel.setSelectionInterval(2 * start, end);
     m_caret.setPosition(end + 1);
   }
+
+  /**
+   * Returns whether typed data must be inserted instead of overwriting.
+   *
+   * @return {@code true}, if insert mode is on and data provider supports insertion
+   */
+  private boolean isInserting()
+  {
+    return m_insertMode && m_dataProvider.isResizable();
+  }
+
+  /**
+   * Inserts data into the data provider and moves modified offsets, colored
+   * ranges and selection accordingly.
+   *
+   * @param offset The position at which data is inserted in range
+   *        {@code [0; getData().getDataLength()]}
+   * @param data The data to insert
+   */
+  private void insertBytes(long offset, byte[] data)
+  {
+    m_dataProvider.insertData(offset, data);
+    shiftOffsets(offset, data.length);
+  }
+
+  /**
+   * Inserts data of another provider into the data provider and moves modified
+   * offsets, colored ranges and selection accordingly.
+   *
+   * @param offset The position at which data is inserted in range
+   *        {@code [0; getData().getDataLength()]}
+   * @param source The provider with data to insert
+   * @param sourceOffset The start offset of the inserted data in the source
+   * @param length The count of bytes to insert
+   */
+  private void insertBytes(long offset, IDataProvider source, long sourceOffset, long length)
+  {
+    m_dataProvider.insertData(offset, source, sourceOffset, length);
+    shiftOffsets(offset, length);
+  }
+
+  /**
+   * Removes data from the data provider and moves modified offsets, colored
+   * ranges and selection accordingly.
+   *
+   * @param offset The position of the first removed byte in range
+   *        {@code [0; getData().getDataLength())}
+   * @param length The count of bytes to remove
+   */
+  private void removeBytes(long offset, long length)
+  {
+    m_dataProvider.removeData(offset, length);
+    shiftOffsets(offset, -length);
+  }
+
+  /**
+   * Moves all offset-based state of the component after insertion or removing of data.
+   *
+   * @param offset The position at which data is inserted or removed
+   * @param delta Count of inserted bytes, if positive, or count of removed
+   *        bytes, if negative
+   */
+  private void shiftOffsets(long offset, long delta)
+  {
+    shiftModified(offset, delta);
+    for (final ColoredRangeManager ranges : m_coloredRanges) {
+      ranges.shift(offset, delta);
+    }
+    selectionModel.shift(2 * offset, 2 * delta);
+  }
+
+  /**
+   * Removes selected data or, if nothing is selected, one byte at the caret
+   * or before it and registers undoable edit.
+   *
+   * @param backward If {@code true} and nothing is selected, the byte before
+   *        the caret is removed, otherwise the byte at the caret
+   */
+  private void deleteData(boolean backward)
+  {
+    if (!isEditable() || m_dataProvider == null || !m_dataProvider.isResizable()
+     || getDefinitionStatus() != DefinitionStatus.DEFINED) {
+      return;
+    }
+    final List<long[]> ranges;
+    if (selectionModel.isEmpty()) {
+      final long position = m_caret.getPosition();
+      final long offset = backward ? (position + 1) / 2 - 1 : position / 2;
+      if (offset < 0 || offset >= getDataLength()) {
+        return;
+      }
+      ranges = Collections.singletonList(new long[] { offset, offset + 1 });
+    } else {
+      ranges = getSelectedRanges();
+      if (ranges == null) {
+        return;
+      }
+    }
+    final UndoableEdit edit = removeRanges(ranges);
+    if (edit != null) {
+      // register as undoable action
+      fireUndoableEditListener(edit);
+    }
+  }
+
+  /**
+   * Returns whether selection contains data, and not only marks the caret
+   * position, as after a click.
+   *
+   * @return {@code true}, if selected data should be replaced by typed data
+   */
+  private boolean hasSelectedData()
+  {
+    if (selectionModel.isEmpty()) {
+      return false;
+    }
+    final long caret = m_caret.getPosition() / 2;
+    for (final SelectionModel.Interval r : selectionModel) {
+      if (r.getStart() / 2 != caret || r.getEnd() / 2 != caret) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns selected byte ranges, clipped to the data.
+   *
+   * @return List of ranges, each range is {@code [start; end)}, or {@code null},
+   *         if selected data can not be removed
+   */
+  private List<long[]> getSelectedRanges()
+  {
+    final boolean copy = !(m_dataProvider instanceof ISnapshotDataProvider);
+    final ArrayList<long[]> ranges = new ArrayList<>();
+    for (final SelectionModel.Interval r : selectionModel) {
+      final long start = r.getStart() / 2;
+      final long end = Math.min((r.getEnd() + 1) / 2, getDataLength());
+      if (copy && end - start > Integer.MAX_VALUE) {
+        // Copy of removed data is kept for undo, so it must fit into an array
+        UIManager.getLookAndFeel().provideErrorFeedback(this);
+        return null;
+      }
+      if (start < end) {
+        ranges.add(new long[] { start, end });
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * Removes byte ranges, clears selection and moves caret to the start of the
+   * first range.
+   *
+   * @param ranges Ordered non-overlapping ranges to remove, each range is
+   *        {@code [start; end)}
+   *
+   * @return Edit, that restores removed data, or {@code null}, if there are
+   *         no ranges
+   */
+  private UndoableEdit removeRanges(List<long[]> ranges)
+  {
+    if (ranges.isEmpty()) {
+      return null;
+    }
+    // Removed data is restored on undo from the snapshot, taken before removing,
+    // without copying. Other providers keep copy of removed data
+    final IDataProvider snapshot = m_dataProvider instanceof ISnapshotDataProvider
+      ? ((ISnapshotDataProvider)m_dataProvider).snapshot() : null;
+
+    // Remove ranges from the last one, so offsets of previous ranges remain valid
+    final CompoundEdit edits = new CompoundEdit();
+    UndoableEdit edit = null;
+    for (int i = ranges.size() - 1; i >= 0; --i) {
+      final long offset = ranges.get(i)[0];
+      final long length = ranges.get(i)[1] - offset;
+      final TreeMap<Long, Integer> modified = m_modifiedOffsets.get(offset, offset + length);
+      if (snapshot != null) {
+        edit = new RemoveEdit(offset, length, snapshot, offset, modified, getActiveView());
+      } else {
+        final IDataProvider removed = new SimpleDataProvider(m_dataProvider.getData(offset, (int)length));
+        edit = new RemoveEdit(offset, length, removed, 0, modified, getActiveView());
+      }
+      removeBytes(offset, length);
+      edits.addEdit(edit);
+    }
+    edits.end();
+
+    selectionModel.clearSelection();
+    setCurrentPosition(2 * ranges.get(0)[0]);
+    m_caret.setVisible(true);
+    repaint();
+    return ranges.size() == 1 ? edit : edits;
+  }
   //</editor-fold>
 
   public void dispose()
@@ -3319,6 +4697,12 @@ public final class JHexView extends JComponent
     m_caret.removeListener(m_listener);
 
     m_caret.stop();
+    m_dataListener.clear();
+
+    if (m_prefetcher != null) {
+      m_prefetcher.shutdown();
+      m_prefetcher = null;
+    }
   }
 
   /**
@@ -3407,6 +4791,25 @@ public final class JHexView extends JComponent
     }
   }
 
+  private class ActionDelete extends AbstractAction
+  {
+    private static final long serialVersionUID = 2868375408913567436L;
+
+    /** If {@code true}, removes byte before the caret, otherwise at the caret. */
+    private final boolean m_backward;
+
+    private ActionDelete(final boolean backward)
+    {
+      m_backward = backward;
+    }
+
+    @Override
+    public void actionPerformed(final ActionEvent event)
+    {
+      deleteData(m_backward);
+    }
+  }
+
   private class ActionDown extends AbstractAction
   {
     private static final long serialVersionUID = -6501310447863685486L;
@@ -3434,7 +4837,7 @@ public final class JHexView extends JComponent
     {
       final long change;
       if (isCtrl) {
-        change = getData().getDataLength()*2 - m_caret.getPosition() - 2;
+        change = getDataLength()*2 - m_caret.getPosition() - 2;
       } else {
         change = (m_bytesPerRow*2) - (m_caret.getPosition() % (m_bytesPerRow*2)) - 2;
       }
@@ -3575,7 +4978,7 @@ public final class JHexView extends JComponent
 
       if (isKeyStroke(KeyEvent.VK_A, ctrl)) {
         // "Select all" action
-        final long end = 2 * m_dataProvider.getDataLength();
+        final long end = 2 * getDataLength();
         selectionModel.setSelectionInterval(0, end);
         m_caret.setPosition(end);
       } else if (isKeyStroke(KeyEvent.VK_V, ctrl)) {
@@ -3634,6 +5037,17 @@ public final class JHexView extends JComponent
     }
   }
 
+  private class ActionInsert extends AbstractAction
+  {
+    private static final long serialVersionUID = -4180231760538735563L;
+
+    @Override
+    public void actionPerformed(final ActionEvent event)
+    {
+      setInsertMode(!isInsertMode());
+    }
+  }
+
   private class ActionUp extends AbstractAction
   {
     private static final long serialVersionUID = -3513103611571283106L;
@@ -3722,6 +5136,191 @@ public final class JHexView extends JComponent
     }
   }
 
+  /**
+   * Represents the undoable edit for all writes of the {@link DataTransaction transaction}.
+   *
+   * @since 2.2
+   */
+  public class TransactionEdit extends AbstractEdit
+  {
+    private final DataTransaction transaction;
+
+    public TransactionEdit(DataTransaction transaction)
+    {
+      super("Patch");
+      this.transaction = transaction;
+    }
+
+    @Override
+    public void undo() throws CannotUndoException
+    {
+      super.undo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        transaction.revert();
+        setModified(transaction, false);
+      } else {
+        throw new CannotUndoException();
+      }
+    }
+
+    @Override
+    public void redo() throws CannotRedoException
+    {
+      super.redo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        transaction.apply();
+        setModified(transaction, true);
+      } else {
+        throw new CannotRedoException();
+      }
+    }
+  }
+
+  /**
+   * Represents the undoable edit for inserted data.
+   *
+   * @since 2.2
+   */
+  public class InsertEdit extends AbstractEdit
+  {
+    /** Offset of inserted data in range {@code [0; getData().getDataLength()]}. */
+    private final long offset;
+    private final byte[] data;
+    private final Views view;
+    /** Edit, that removed data replaced by inserted data, or {@code null}. */
+    private final UndoableEdit replaced;
+
+    public InsertEdit(long offset, byte[] data, Views view)
+    {
+      this(offset, data, view, null);
+    }
+
+    public InsertEdit(long offset, byte[] data, Views view, UndoableEdit replaced)
+    {
+      super("Typing");
+      this.offset = offset;
+      this.data = data;
+      this.view = view;
+      this.replaced = replaced;
+    }
+
+    /**
+     * Absorbs the change of the low nibble of the inserted byte, so typing
+     * of one byte in the hex view is undone in one step.
+     */
+    @Override
+    public boolean addEdit(UndoableEdit anEdit)
+    {
+      if (!(anEdit instanceof DataEdit) || !canUndo() || data.length != 1) {
+        return false;
+      }
+      final DataEdit edit = (DataEdit)anEdit;
+      if (edit.offset != offset || edit.oldValue != data[0] || edit.view != view) {
+        return false;
+      }
+      data[0] = edit.newValue;
+      edit.die();
+      return true;
+    }
+
+    @Override
+    public void undo() throws CannotUndoException
+    {
+      super.undo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        setActiveView(view);
+        removeBytes(offset, data.length);
+        if (replaced != null) {
+          replaced.undo();
+        }
+        setCurrentPosition(2 * offset);
+      } else {
+        throw new CannotUndoException();
+      }
+    }
+
+    @Override
+    public void redo() throws CannotRedoException
+    {
+      super.redo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        setActiveView(view);
+        if (replaced != null) {
+          replaced.redo();
+        }
+        insertBytes(offset, data);
+        for (int i = 0; i < data.length; ++i) {
+          setModified(offset + i);
+        }
+        setCurrentPosition(2 * (offset + data.length));
+      } else {
+        throw new CannotRedoException();
+      }
+    }
+  }
+
+  /**
+   * Represents the undoable edit for removed data.
+   *
+   * @since 2.2
+   */
+  public class RemoveEdit extends AbstractEdit
+  {
+    /** Offset of removed data in range {@code [0; getData().getDataLength())}. */
+    private final long offset;
+    /** Count of removed bytes. */
+    private final long length;
+    /**
+     * Provider, that holds removed data, for example, snapshot of data provider,
+     * taken before removing, so removed data is not copied.
+     */
+    private final IDataProvider source;
+    /** Offset of removed data in the {@link #source}. */
+    private final long sourceOffset;
+    /** Modification counters of removed data, that are restored on undo. */
+    private final TreeMap<Long, Integer> modified;
+    private final Views view;
+
+    public RemoveEdit(long offset, long length, IDataProvider source, long sourceOffset,
+                      TreeMap<Long, Integer> modified, Views view)
+    {
+      super("Delete");
+      this.offset = offset;
+      this.length = length;
+      this.source = source;
+      this.sourceOffset = sourceOffset;
+      this.modified = modified;
+      this.view = view;
+    }
+
+    @Override
+    public void undo() throws CannotUndoException
+    {
+      super.undo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        setActiveView(view);
+        insertBytes(offset, source, sourceOffset, length);
+        m_modifiedOffsets.setAll(modified);
+        setCurrentPosition(2 * offset);
+      } else {
+        throw new CannotUndoException();
+      }
+    }
+
+    @Override
+    public void redo() throws CannotRedoException
+    {
+      super.redo();
+      if (getDefinitionStatus() == DefinitionStatus.DEFINED) {
+        setActiveView(view);
+        removeBytes(offset, length);
+        setCurrentPosition(2 * offset);
+      } else {
+        throw new CannotRedoException();
+      }
+    }
+  }
+
   /**
    * Handles copy to and paste from clipboard actions.
    *
@@ -3751,7 +5350,7 @@ public final class JHexView extends JComponent
         try {
           final String data = (String)support.getTransferable().getTransferData(DataFlavor.stringFlavor);
           if (data != null && !support.isDrop()) {
-            if (hv.m_caret.getPosition() < 2 * getData().getDataLength()) {
+            if (hv.m_caret.getPosition() < 2 * getDataLength()) {
               if (hv.getActiveView() == Views.HEX_VIEW) {
                 // processing hex view
                 KeyEvent event = new KeyEvent(hv, 0, 0, 0, 0, '\0');
@@ -3834,8 +5433,30 @@ public final class JHexView extends JComponent
 
     private void keyPressedInAsciiView(char ch)
     {
+      if (isInserting()) {
+        // Typed data replaces selected data
+        UndoableEdit replaced = null;
+        if (hasSelectedData()) {
+          final List<long[]> ranges = getSelectedRanges();
+          if (ranges == null) {
+            return;
+          }
+          replaced = removeRanges(ranges);
+        }
+        final long offset = m_caret.getPosition() / 2;
+        final byte[] data = { (byte) ch };
+        insertBytes(offset, data);
+        setModified(offset);
+        fireUndoableEditListener(new InsertEdit(offset, data, getActiveView(), replaced));
+        changeBy(false, 2L);
+        return;
+      }
       final long offset = m_caret.getPosition() / 2;
 
+      if (!m_dataProvider.isEditable(offset, 1)) {
+        UIManager.getLookAndFeel().provideErrorFeedback(JHexView.this);
+        return;
+      }
       final byte[] data = m_dataProvider.getData(offset, 1);
       if (data == null || data.length == 0) {
         return;
@@ -3863,8 +5484,34 @@ public final class JHexView extends JComponent
       if (value == -1) {
         return;
       }
+      // Typing of the hi nibble inserts new byte, typing of the lo nibble
+      // overwrites it as usual and is merged with the insertion in one undo step
+      if (isInserting()) {
+        // Typed data replaces selected data
+        UndoableEdit replaced = null;
+        if (hasSelectedData()) {
+          final List<long[]> ranges = getSelectedRanges();
+          if (ranges == null) {
+            return;
+          }
+          replaced = removeRanges(ranges);
+        }
+        if (replaced != null || m_caret.getPosition() % 2 == 0) {
+          final long offset = m_caret.getPosition() / 2;
+          final byte[] data = { (byte) (value << 4) };
+          insertBytes(offset, data);
+          setModified(offset);
+          fireUndoableEditListener(new InsertEdit(offset, data, getActiveView(), replaced));
+          changeBy(false, 1L);
+          return;
+        }
+      }
       final long offset = m_caret.getPosition() / 2;
 
+      if (!m_dataProvider.isEditable(offset, 1)) {
+        UIManager.getLookAndFeel().provideErrorFeedback(JHexView.this);
+        return;
+      }
       final byte[] data = m_dataProvider.getData(offset, 1);
       if (data == null || data.length == 0) {
         return;
@@ -3907,7 +5554,18 @@ public final class JHexView extends JComponent
     public void adjustmentValueChanged(final AdjustmentEvent event)
     {
       if (event.getSource() == m_scrollbar) {
-        m_firstRow = event.getValue();
+        if (m_scrollbarSync) {
+          return;
+        }
+        final int value = event.getValue();
+        if (m_rowsPerScrollUnit == 1) {
+          m_firstRow = value;
+        } else {
+          // When scrollbar is moved to the end, show the last rows
+          final boolean isEnd = value + m_scrollbar.getVisibleAmount() >= m_scrollbar.getMaximum();
+          m_firstRow = isEnd ? m_maxFirstRow : Math.min(value * m_rowsPerScrollUnit, m_maxFirstRow);
+        }
+        prefetch();
       }
       else {
         m_firstColumn = event.getValue();
@@ -3946,9 +5604,26 @@ public final class JHexView extends JComponent
     @Override
     public void dataChanged(DataChangedEvent event)
     {
-      setScrollBarMaximum();
-
-      repaint();
+      // Index does not describe changed data
+      setSearchIndex(null);
+      final long start = event.getOffset();
+      // Recalculate the scroll model only when length changes
+      final long oldLength = m_scrolledDataLength;
+      final long length = getDataLength();
+      if (length != oldLength) {
+        final boolean atEnd = m_firstRow >= m_maxFirstRow;
+        setScrollBarMaximum();
+        if (m_stickToEnd && atEnd && length > oldLength) {
+          scrollToRow(m_maxFirstRow);
+        }
+        // Rows before the old end did not change when data was appended
+        if (start < oldLength) {
+          repaint();
+          return;
+        }
+      }
+      final long end = start + event.getLength();
+      repaintRows(start / m_bytesPerRow, end / m_bytesPerRow + (end % m_bytesPerRow != 0 ? 1 : 0));
     }
 
     @Override
@@ -4023,7 +5698,7 @@ public final class JHexView extends JComponent
         scrollToPosition(2 * getFirstVisibleByte() + nibblesPerRow);
 
         final long newPos = m_caret.getPosition() + nibblesPerRow;
-        if (startNibble + newPos <= 2 * m_dataProvider.getDataLength()) {
+        if (startNibble + newPos <= 2 * getDataLength()) {
           selectionModel.setSelectionInterval(startNibble, newPos);
           m_caret.setPosition(newPos);
         }
@@ -4145,7 +5820,7 @@ public final class JHexView extends JComponent
       }
 
       final int notches = e.getWheelRotation();
-      m_scrollbar.setValue(m_scrollbar.getValue() + 3*notches); // scrolling 3 lines per notch
+      scrollToRow(m_firstRow + 3*notches); // scrolling 3 lines per notch
     }
 
     @Override
@@ -0,0 +1,213 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only data provider that provides data to the hex view component directly
+ * from a file. The file is {@link FileChannel#map mapped} into memory by segments
+ * of fixed size on demand, so opening of a file takes constant time and data
+ * of the file never copied into the Java heap, except data, requested by
+ * {@link #getData(long, int)}.
+ * <p>
+ * Only limited number of recently used segments is kept mapped. References to
+ * the least recently used segment are dropped when new segment must be mapped,
+ * which allows to unmap it when the buffer will be garbage collected.
+ * <p>
+ * Provider must be {@link #close() closed} when it is no longer needed.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class MappedFileDataProvider extends AbstractDataProvider implements Closeable
+{
+  /** Default size of mapped segment in bytes (64 MiB). */
+  public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+  /** Default maximum count of segments that will be kept mapped simultaneously. */
+  public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+  private final FileChannel m_channel;
+  /** Size of the file, captured at time of provider creation. */
+  private final long m_length;
+  /** Size of each mapped segment in bytes. The last segment can be shorter. */
+  private final int m_segmentSize;
+  /**
+   * Currently mapped segments, keyed by segment index. Map keeps access order,
+   * so eldest entry is the least recently used segment.
+   */
+  private final LinkedHashMap<Long, MappedByteBuffer> m_segments;
+
+  /**
+   * Opens specified file for reading with default segment size and count.
+   *
+   * @param file File to open
+   *
+   * @throws IOException If file can not be opened
+   */
+  public MappedFileDataProvider(File file) throws IOException
+  {
+    this(file.toPath(), DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+  }
+
+  /**
+   * Opens specified file for reading.
+   *
+   * @param file File to open
+   * @param segmentSize Size of each mapped segment in bytes, must be positive
+   * @param maxSegments Maximum count of segments, that can be mapped simultaneously,
+   *        must be positive
+   *
+   * @throws IOException If file can not be opened
+   * @throws IllegalArgumentException If {@code segmentSize} or {@code maxSegments}
+   *         is not positive
+   */
+  public MappedFileDataProvider(Path file, int segmentSize, final int maxSegments) throws IOException
+  {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+    }
+    if (maxSegments <= 0) {
+      throw new IllegalArgumentException("Count of mapped segments must be positive: " + maxSegments);
+    }
+    m_channel = FileChannel.open(file, StandardOpenOption.READ);
+    m_length = m_channel.size();
+    m_segmentSize = segmentSize;
+    m_segments = new LinkedHashMap<Long, MappedByteBuffer>(maxSegments + 1, 1.0f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest)
+      {
+        return size() > maxSegments;
+      }
+    };
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    if (offset + length > m_length) {
+      length = (int)(m_length - offset);
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    getData(offset, result, 0, length);
+    return result;
+  }
+
+  @Override
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    if (offset + length > m_length) {
+      length = (int)(m_length - offset);
+    }
+    int pos = 0;
+    while (pos < length) {
+      final long current = offset + pos;
+      final ByteBuffer segment = getSegment(current / m_segmentSize).duplicate();
+      final int start = (int)(current % m_segmentSize);
+      final int count = Math.min(length - pos, segment.limit() - start);
+
+      segment.position(start);
+      segment.get(buffer, bufferOffset + pos, count);
+      pos += count;
+    }
+    return Math.max(length, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return Length of the file or {@link Integer#MAX_VALUE}, if file is bigger
+   */
+  @Override
+  public int getDataLength()
+  {
+    return (int)Math.min(m_length, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public long getDataLengthLong()
+  {
+    return m_length;
+  }
+
+  @Override
+  public boolean hasData(long offset, int length)
+  {
+    return offset >= 0 && offset + length <= m_length;
+  }
+
+  /** @return Always {@code false} */
+  @Override
+  public boolean isEditable()
+  {
+    return false;
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return false;
+  }
+
+  /**
+   * Always throws {@link UnsupportedOperationException}, because provider is read-only.
+   */
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    throw new UnsupportedOperationException("MappedFileDataProvider is read-only");
+  }
+
+  /**
+   * Releases all mapped segments and closes the file.
+   *
+   * @throws IOException If file can not be closed
+   */
+  @Override
+  public void close() throws IOException
+  {
+    synchronized (m_segments) {
+      m_segments.clear();
+    }
+    m_channel.close();
+  }
+
+  /**
+   * Returns mapped segment with specified index, mapping it if necessary.
+   *
+   * @param index Index of segment
+   *
+   * @return Mapped segment, never {@code null}
+   */
+  private MappedByteBuffer getSegment(long index)
+  {
+    synchronized (m_segments) {
+      final Long key = Long.valueOf(index);
+      MappedByteBuffer segment = m_segments.get(key);
+      if (segment == null) {
+        final long start = index * m_segmentSize;
+        final long size  = Math.min(m_segmentSize, m_length - start);
+        try {
+          segment = m_channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } catch (IOException ex) {
+          throw new UncheckedIOException("Can not map segment at 0x" + Long.toHexString(start), ex);
+        }
+        m_segments.put(key, segment);
+      }
+      return segment;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Matcher, that searches for a {@link BytePattern pattern with masks}. Matcher
+ * anchors on the longest run of fully defined bytes of pattern: the run is
+ * searched by {@link BoyerMooreMatcher Boyer-Moore algorithm}, which skips most
+ * bytes of data, and the rest of pattern is checked only around found runs.
+ * If pattern has no fully defined bytes, each position of data is checked.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+final class MaskedMatcher extends Matcher
+{
+  private final BytePattern m_pattern;
+  /** Matcher of the longest run of fully defined bytes or {@code null}, if there is no such bytes. */
+  private final BoyerMooreMatcher m_anchor;
+  /** Index of the first byte of anchor run in the pattern. */
+  private final int m_anchorStart;
+
+  /**
+   * Creates matcher for the specified pattern.
+   *
+   * @param pattern The pattern to search
+   */
+  MaskedMatcher(BytePattern pattern)
+  {
+    m_pattern = pattern;
+    int bestStart = 0;
+    int bestLength = 0;
+    for (int i = 0; i < pattern.length();) {
+      if (pattern.getMask(i) != (byte)0xFF) {
+        ++i;
+        continue;
+      }
+      final int start = i;
+      while (i < pattern.length() && pattern.getMask(i) == (byte)0xFF) {
+        ++i;
+      }
+      if (i - start > bestLength) {
+        bestStart  = start;
+        bestLength = i - start;
+      }
+    }
+    m_anchorStart = bestStart;
+    if (bestLength > 0) {
+      final byte[] run = new byte[bestLength];
+      for (int i = 0; i < bestLength; ++i) {
+        run[i] = pattern.getValue(bestStart + i);
+      }
+      m_anchor = new BoyerMooreMatcher(run, true);
+    } else {
+      m_anchor = null;
+    }
+  }
+
+  @Override
+  int length() { return m_pattern.length(); }
+
+  @Override
+  byte[] literal() { return m_anchor == null ? null : m_anchor.literal(); }
+
+  @Override
+  int literalOffset() { return m_anchorStart; }
+
+  @Override
+  int find(byte[] buffer, int from, int to)
+  {
+    final int last = to - m_pattern.length();
+    if (m_anchor == null) {
+      for (int pos = from; pos <= last; ++pos) {
+        if (m_pattern.matches(buffer, pos)) {
+          return pos;
+        }
+      }
+      return -1;
+    }
+    // Anchor must be placed so that the whole pattern fits into the range
+    final int anchorTo = last + m_anchorStart + m_anchor.length();
+    for (int pos = from + m_anchorStart; pos < anchorTo;) {
+      final int found = m_anchor.find(buffer, pos, anchorTo);
+      if (found < 0) {
+        return -1;
+      }
+      final int start = found - m_anchorStart;
+      if (m_pattern.matches(buffer, start)) {
+        return start;
+      }
+      pos = found + 1;
+    }
+    return -1;
+  }
+
+  @Override
+  int findLast(byte[] buffer, int from, int to)
+  {
+    final int last = to - m_pattern.length();
+    if (m_anchor == null) {
+      for (int pos = last; pos >= from; --pos) {
+        if (m_pattern.matches(buffer, pos)) {
+          return pos;
+        }
+      }
+      return -1;
+    }
+    final int anchorFrom = from + m_anchorStart;
+    for (int anchorTo = last + m_anchorStart + m_anchor.length(); anchorTo > anchorFrom;) {
+      final int found = m_anchor.findLast(buffer, anchorFrom, anchorTo);
+      if (found < 0) {
+        return -1;
+      }
+      final int start = found - m_anchorStart;
+      if (m_pattern.matches(buffer, start)) {
+        return start;
+      }
+      // Next anchor must start before the found one
+      anchorTo = found + m_anchor.length() - 1;
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + m_pattern + ", anchor=" + m_anchorStart + "]";
+  }
+}
@@ -0,0 +1,64 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+/**
+ * Algorithm, that finds matches of a pattern in an array of bytes. Matchers
+ * work only with raw arrays, {@link SearchEngine} feeds them with windows of
+ * data and takes care about matches, that cross boundaries of windows.
+ * <p>
+ * Matchers have no mutable state, so one matcher can be used by several
+ * threads simultaneously.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+abstract class Matcher
+{
+  /**
+   * Returns length of matched sequence of bytes.
+   *
+   * @return Length of match, always positive
+   */
+  abstract int length();
+
+  /**
+   * Finds the first match, that lies entirely inside the specified range
+   * of the buffer.
+   *
+   * @param buffer Buffer with data
+   * @param from Index of the first byte of the range, inclusive
+   * @param to Index of the last byte of the range, exclusive
+   *
+   * @return Index of the first byte of the first match or -1, if there is no match
+   */
+  abstract int find(byte[] buffer, int from, int to);
+
+  /**
+   * Finds the last match, that lies entirely inside the specified range
+   * of the buffer.
+   *
+   * @param buffer Buffer with data
+   * @param from Index of the first byte of the range, inclusive
+   * @param to Index of the last byte of the range, exclusive
+   *
+   * @return Index of the first byte of the last match or -1, if there is no match
+   */
+  abstract int findLast(byte[] buffer, int from, int to);
+
+  /**
+   * Returns sequence of bytes, that each match contains at {@link #literalOffset()}.
+   * ASCII letters of sequence can be in lower case for matchers, that ignore case.
+   * Search {@link NgramIndex index} uses the sequence to find candidates for matches.
+   *
+   * @return Sequence of bytes or {@code null}, if matches have no such sequence
+   */
+  byte[] literal() { return null; }
+
+  /**
+   * Returns offset of {@link #literal()} from the start of match.
+   *
+   * @return Offset in bytes
+   */
+  int literalOffset() { return 0; }
+}
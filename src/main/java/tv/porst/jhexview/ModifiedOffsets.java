@@ -0,0 +1,187 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counters of modifications of bytes, keyed by offsets of bytes. Offsets are
+ * moved, when data is inserted or removed.
+ * <p>
+ * Offsets are split at the last edited position into two maps: offsets before
+ * that position are stored as is, and offsets after it are stored relative to
+ * the common delta. Insertion or removing of data at the split point changes
+ * only the delta, and moving of the split point moves only offsets between the
+ * old and the new position, so typing in the middle of data takes {@code O(log n)}
+ * time per byte instead of moving of all following offsets.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+final class ModifiedOffsets
+{
+  /** Counters of offsets before {@link #m_split}, keyed by offsets. */
+  private final TreeMap<Long, Integer> m_head = new TreeMap<>();
+  /**
+   * Counters of offsets at or after {@link #m_split}, keyed by offsets minus
+   * {@link #m_delta}.
+   */
+  private final TreeMap<Long, Integer> m_tail = new TreeMap<>();
+  /** Offset, that separates {@link #m_head} and {@link #m_tail}. */
+  private long m_split;
+  /** Difference between offsets and keys of {@link #m_tail}. */
+  private long m_delta;
+
+  /**
+   * Returns whether there are no modified offsets.
+   *
+   * @return {@code true}, if no offsets are stored
+   */
+  public boolean isEmpty() { return m_head.isEmpty() && m_tail.isEmpty(); }
+
+  /**
+   * Returns count of modified offsets.
+   *
+   * @return Count of offsets with positive counters
+   */
+  public int size() { return m_head.size() + m_tail.size(); }
+
+  /** Removes all offsets. */
+  public void clear()
+  {
+    m_head.clear();
+    m_tail.clear();
+    m_split = 0;
+    m_delta = 0;
+  }
+
+  /**
+   * Returns count of modifications of the byte.
+   *
+   * @param offset Offset of the byte
+   *
+   * @return Count of modifications or {@code 0}, if byte was not modified
+   */
+  public int get(long offset)
+  {
+    final Integer value = offset < m_split ? m_head.get(offset) : m_tail.get(offset - m_delta);
+    return value != null ? value.intValue() : 0;
+  }
+
+  /**
+   * Sets count of modifications of the byte.
+   *
+   * @param offset Offset of the byte
+   * @param count Count of modifications. If not positive, offset is removed
+   */
+  public void set(long offset, int count)
+  {
+    final TreeMap<Long, Integer> map = offset < m_split ? m_head : m_tail;
+    final Long key = offset < m_split ? offset : offset - m_delta;
+    if (count > 0) {
+      map.put(key, count);
+    } else {
+      map.remove(key);
+    }
+  }
+
+  /**
+   * Sets counters of several bytes.
+   *
+   * @param counters Counters of modifications, keyed by offsets
+   */
+  public void setAll(Map<Long, Integer> counters)
+  {
+    for (final Map.Entry<Long, Integer> e : counters.entrySet()) {
+      set(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Returns counters of bytes in the range.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive
+   *
+   * @return New map with counters, keyed by offsets
+   */
+  public TreeMap<Long, Integer> get(long from, long to)
+  {
+    final TreeMap<Long, Integer> result = new TreeMap<>();
+    if (from < m_split) {
+      result.putAll(m_head.subMap(from, Math.min(to, m_split)));
+    }
+    if (to > m_split) {
+      final long start = Math.max(from, m_split);
+      for (final Map.Entry<Long, Integer> e : m_tail.subMap(start - m_delta, to - m_delta).entrySet()) {
+        result.put(e.getKey() + m_delta, e.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns all modified offsets.
+   *
+   * @return Offsets in increasing order
+   */
+  public long[] toArray()
+  {
+    final long[] result = new long[size()];
+    int i = 0;
+    for (final Long offset : m_head.keySet()) {
+      result[i++] = offset;
+    }
+    for (final Long key : m_tail.keySet()) {
+      result[i++] = key + m_delta;
+    }
+    return result;
+  }
+
+  /**
+   * Moves offsets after insertion or removing of data. Offsets of removed
+   * data are forgotten.
+   *
+   * @param offset The position at which data is inserted or removed
+   * @param delta Count of inserted bytes, if positive, or count of removed
+   *        bytes, if negative
+   */
+  public void shift(long offset, long delta)
+  {
+    if (delta == 0) {
+      return;
+    }
+    moveSplit(offset);
+    if (delta < 0) {
+      m_tail.subMap(offset - m_delta, offset - delta - m_delta).clear();
+    }
+    m_delta += delta;
+  }
+
+  /**
+   * Moves point, that separates offsets, stored as is, from offsets, stored
+   * relative to the delta.
+   *
+   * @param split New split point
+   */
+  private void moveSplit(long split)
+  {
+    if (split > m_split) {
+      final SortedMap<Long, Integer> moved = m_tail.headMap(split - m_delta);
+      for (final Map.Entry<Long, Integer> e : moved.entrySet()) {
+        m_head.put(e.getKey() + m_delta, e.getValue());
+      }
+      moved.clear();
+    } else
+    if (split < m_split) {
+      final SortedMap<Long, Integer> moved = m_head.tailMap(split);
+      for (final Map.Entry<Long, Integer> e : moved.entrySet()) {
+        m_tail.put(e.getKey() - m_delta, e.getValue());
+      }
+      moved.clear();
+    }
+    m_split = split;
+  }
+}
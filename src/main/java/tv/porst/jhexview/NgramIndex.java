@@ -0,0 +1,527 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Index of sequences of {@link #GRAM_LENGTH three bytes} (3-grams) in data,
+ * that speeds up repeated searches in data, which does not change, such as
+ * memory dumps. Data is split into blocks, and for each 3-gram index keeps
+ * list of blocks, in which it occurs. When {@link SearchEngine#setIndex search
+ * engine uses index}, it scans only blocks, that contain all 3-grams of the
+ * pattern, so searching of a rare pattern takes milliseconds instead of a full
+ * scan of data.
+ * <p>
+ * To keep index compact, 3-grams are hashed into 2<sup>20</sup> buckets,
+ * ASCII letters are indexed in lower case, so one index serves case-sensitive
+ * and case-insensitive searches, and lists of blocks are delta-encoded by
+ * variable-length integers. Hashing and blocks only add candidates, which are
+ * verified by scanning, so search with index finds the same matches, as
+ * search without it. Size of index depends on variety of data: repetitive
+ * data, such as code and tables, produces short lists (index of Java class
+ * files with default blocks takes about a quarter of their size), while for
+ * compressed or encrypted data index approaches size of data and gives no benefit.
+ * <p>
+ * Index is built by {@link #build} or in background by {@link #buildAsync},
+ * and can be {@link #save saved} into a sidecar file and {@link #load loaded}
+ * later. Index stores length and a fingerprint of data, that are checked by
+ * {@link #isValidFor}, but it can not detect all modifications of data, so
+ * index must be rebuilt, when data is changed.
+ * <p>
+ * Indexes are immutable and can be used by several searches simultaneously.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class NgramIndex
+{
+  /** Length of indexed sequences of bytes. Patterns shorter than that can not use index. */
+  public static final int GRAM_LENGTH = 3;
+  /** Default size of block of data (64 KiB). */
+  public static final int DEFAULT_BLOCK_SIZE = 64 << 10;
+  /** Extension of sidecar files with index, see {@link #sidecarOf(Path)}. */
+  public static final String EXTENSION = ".jhxidx";
+
+  /** Count of bits in the hash of 3-gram. */
+  private static final int BUCKET_BITS = 20;
+  private static final int BUCKETS = 1 << BUCKET_BITS;
+  /** Signature of index files, {@code "JHIX"}. */
+  private static final int MAGIC = 0x4A484958;
+  private static final int FORMAT_VERSION = 1;
+  /** Count of bytes at the start and at the end of data, that are included into fingerprint. */
+  private static final int FINGERPRINT_SIZE = 64 << 10;
+  /** Size of window, in which data is read while building. */
+  private static final int WINDOW_SIZE = 1 << 20;
+
+  /** Table, that maps ASCII upper-case letters to lower-case and other bytes to itself. */
+  private static final int[] FOLD = new int[256];
+  static {
+    for (int i = 0; i < 256; ++i) {
+      FOLD[i] = i >= 'A' && i <= 'Z' ? i - 'A' + 'a' : i;
+    }
+  }
+
+  private final int m_blockSize;
+  private final long m_dataLength;
+  private final long m_fingerprint;
+  /**
+   * Start of list of blocks of each bucket in {@link #m_postings}. List of
+   * bucket {@code h} ends at {@code m_offsets[h + 1]}.
+   */
+  private final int[] m_offsets;
+  /**
+   * Lists of blocks in increasing order. First item is index of block plus one,
+   * next items are differences with previous block, stored by 7 bits per byte,
+   * lowest bits first, with the highest bit set in all bytes except the last.
+   */
+  private final byte[] m_postings;
+
+  private NgramIndex(int blockSize, long dataLength, long fingerprint, int[] offsets, byte[] postings)
+  {
+    m_blockSize = blockSize;
+    m_dataLength = dataLength;
+    m_fingerprint = fingerprint;
+    m_offsets = offsets;
+    m_postings = postings;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Building">
+  /**
+   * Builds index of data in the current thread. Data is read twice: first pass
+   * calculates size of lists, second pass fills them.
+   *
+   * @param data Provider with data to index
+   * @param blockSize Size of block of data, must not be less than {@link #GRAM_LENGTH}.
+   *        Smaller blocks give less candidates for search, but make index bigger
+   * @param listener Listener that is notified about progress, can be {@code null}.
+   *        Listener can stop building by throwing an unchecked exception
+   *
+   * @return Index of data
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   * @throws IllegalArgumentException If {@code blockSize} is less than {@link #GRAM_LENGTH}
+   *         or data contains too many blocks
+   * @throws IllegalStateException If index does not fit into an array. Use bigger blocks
+   */
+  public static NgramIndex build(IDataProvider data, int blockSize, IProgressListener listener)
+  {
+    if (blockSize < GRAM_LENGTH) {
+      throw new IllegalArgumentException("Block size " + blockSize + " is less than " + GRAM_LENGTH);
+    }
+    final long length = data.getDataLengthLong();
+    if (length / blockSize >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Block size " + blockSize + " is too small for "
+        + length + " bytes of data");
+    }
+    final long fingerprint = fingerprint(data, length);
+    final int[] last = new int[BUCKETS];
+    final int[] sizes = new int[BUCKETS];
+    scan(data, length, blockSize, last, sizes, null, listener);
+
+    final int[] offsets = new int[BUCKETS + 1];
+    long total = 0;
+    for (int h = 0; h < BUCKETS; ++h) {
+      offsets[h] = (int)total;
+      total += sizes[h];
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException("Index of " + length + " bytes of data with block size "
+          + blockSize + " is too big, use bigger blocks");
+      }
+    }
+    offsets[BUCKETS] = (int)total;
+
+    final byte[] postings = new byte[(int)total];
+    Arrays.fill(last, 0);
+    System.arraycopy(offsets, 0, sizes, 0, BUCKETS);
+    scan(data, length, blockSize, last, sizes, postings, listener);
+    return new NgramIndex(blockSize, length, fingerprint, offsets, postings);
+  }
+
+  /**
+   * Starts building of index in a new background thread. If provider supports
+   * {@link ISnapshotDataProvider snapshots}, snapshot is indexed, otherwise
+   * provider must support reading from the background thread. Cancellation of
+   * the returned future stops building.
+   *
+   * @param data Provider with data to index
+   * @param blockSize Size of block of data, must not be less than {@link #GRAM_LENGTH}
+   * @param listener Listener that is notified about progress in the background
+   *        thread, can be {@code null}
+   *
+   * @return Future, that completes with the built index or with the exception,
+   *         thrown by {@link #build}
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   */
+  public static CompletableFuture<NgramIndex> buildAsync(IDataProvider data, final int blockSize, final IProgressListener listener)
+  {
+    final IDataProvider source = data instanceof ISnapshotDataProvider
+                               ? ((ISnapshotDataProvider)data).snapshot() : data;
+    if (source == null) {
+      throw new NullPointerException("Data provider for index can't be null");
+    }
+    final CompletableFuture<NgramIndex> result = new CompletableFuture<>();
+    final Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          result.complete(build(source, blockSize, new IProgressListener()
+          {
+            @Override
+            public void progressChanged(long processed, long total)
+            {
+              if (result.isDone()) {
+                throw new CancellationException("Building of index cancelled");
+              }
+              if (listener != null) {
+                listener.progressChanged(processed, total);
+              }
+            }
+          }));
+        } catch (Throwable ex) {
+          result.completeExceptionally(ex);
+        }
+      }
+    }, "JHexView index builder");
+    thread.setDaemon(true);
+    thread.start();
+    return result;
+  }
+
+  /**
+   * Runs over all 3-grams of data and, for each 3-gram, that occurs in a block
+   * for the first time, adds that block into list of its bucket.
+   *
+   * @param data Provider with data
+   * @param length Length of data
+   * @param blockSize Size of block
+   * @param last Last block plus one, added to each bucket, must be filled by zeroes
+   * @param sizes Sizes of lists, if {@code postings} is {@code null}, or indexes
+   *        in {@code postings}, where next items of lists will be written
+   * @param postings Lists of blocks or {@code null}, if only sizes of lists
+   *        must be calculated
+   * @param listener Listener that is notified about progress, can be {@code null}
+   */
+  private static void scan(IDataProvider data, long length, int blockSize,
+                           int[] last, int[] sizes, byte[] postings, IProgressListener listener)
+  {
+    final byte[] window = new byte[(int)Math.min(WINDOW_SIZE, Math.max(length, 1))];
+    // Progress of both passes is reported as one operation
+    final long base = postings == null ? 0 : length;
+    int gram = 0;
+    // Count of bytes before the end of the first 3-gram
+    int skip = GRAM_LENGTH - 1;
+    int block = 0;
+    // Count of 3-grams, that still start in the current block
+    int left = blockSize;
+    for (long pos = 0; pos < length;) {
+      final int count = data.getData(pos, window, 0, (int)Math.min(window.length, length - pos));
+      if (count <= 0) {
+        break;
+      }
+      for (int i = 0; i < count; ++i) {
+        gram = (gram << 8 | FOLD[window[i] & 0xFF]) & 0xFFFFFF;
+        if (skip > 0) {
+          --skip;
+          continue;
+        }
+        if (--left < 0) {
+          ++block;
+          left = blockSize - 1;
+        }
+        final int h = bucket(gram);
+        final int delta = block + 1 - last[h];
+        if (delta != 0) {
+          last[h] = block + 1;
+          if (postings == null) {
+            sizes[h] += varIntSize(delta);
+          } else {
+            sizes[h] = writeVarInt(postings, sizes[h], delta);
+          }
+        }
+      }
+      pos += count;
+      if (listener != null) {
+        listener.progressChanged(base + pos, 2 * length);
+      }
+    }
+  }
+
+  /**
+   * Calculates checksum of length of data and its bytes at the start and at the end.
+   */
+  private static long fingerprint(IDataProvider data, long length)
+  {
+    final CRC32 crc = new CRC32();
+    for (int i = 0; i < 8; ++i) {
+      crc.update((int)(length >>> 8 * i));
+    }
+    final byte[] buffer = new byte[(int)Math.min(FINGERPRINT_SIZE, length)];
+    crc.update(buffer, 0, data.getData(0, buffer, 0, buffer.length));
+    crc.update(buffer, 0, data.getData(length - buffer.length, buffer, 0, buffer.length));
+    return crc.getValue();
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Persistence">
+  /**
+   * Returns path of sidecar file with index for the specified file: file with
+   * the same name plus {@link #EXTENSION} in the same directory.
+   *
+   * @param file File with data
+   *
+   * @return Path of file with index
+   */
+  public static Path sidecarOf(Path file)
+  {
+    return file.resolveSibling(file.getFileName() + EXTENSION);
+  }
+
+  /**
+   * Writes index into the file. Existing file is replaced.
+   *
+   * @param file File for index, usually {@link #sidecarOf sidecar} of file with data
+   *
+   * @throws IOException If file can not be written
+   */
+  public void save(Path file) throws IOException
+  {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(BUCKET_BITS);
+      out.writeInt(m_blockSize);
+      out.writeLong(m_dataLength);
+      out.writeLong(m_fingerprint);
+      for (final int offset : m_offsets) {
+        out.writeInt(offset);
+      }
+      out.write(m_postings);
+    }
+  }
+
+  /**
+   * Reads index from the file. Use {@link #isValidFor} to check, that index
+   * corresponds to data.
+   *
+   * @param file File with index, written by {@link #save}
+   *
+   * @return The read index
+   *
+   * @throws IOException If file can not be read or does not contain index
+   *         in the supported format
+   */
+  public static NgramIndex load(Path file) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("File " + file + " does not contain index");
+      }
+      final int version = in.readInt();
+      final int bits = in.readInt();
+      if (version != FORMAT_VERSION || bits != BUCKET_BITS) {
+        throw new IOException("Index in file " + file + " has unsupported format " + version + "/" + bits);
+      }
+      final int blockSize = in.readInt();
+      final long dataLength = in.readLong();
+      final long fingerprint = in.readLong();
+      if (blockSize < GRAM_LENGTH || dataLength < 0 || dataLength / blockSize >= Integer.MAX_VALUE) {
+        throw new IOException("Index in file " + file + " is corrupted");
+      }
+      final int[] offsets = new int[BUCKETS + 1];
+      for (int h = 0; h <= BUCKETS; ++h) {
+        offsets[h] = in.readInt();
+        // Offsets start from 0 and do not decrease, so all of them are not negative
+        if (h == 0 ? offsets[h] != 0 : offsets[h] < offsets[h - 1]) {
+          throw new IOException("Index in file " + file + " is corrupted");
+        }
+      }
+      // Size of postings is checked before allocation of array for them
+      final long header = 4 * 4 + 8 + 8 + 4L * (BUCKETS + 1);
+      if (offsets[BUCKETS] != Files.size(file) - header) {
+        throw new IOException("Index in file " + file + " is corrupted");
+      }
+      final byte[] postings = new byte[offsets[BUCKETS]];
+      in.readFully(postings);
+      final long blockCount = (dataLength + blockSize - 1) / blockSize;
+      for (int h = 0; h < BUCKETS; ++h) {
+        if (!isValidBucket(postings, offsets[h], offsets[h + 1], blockCount)) {
+          throw new IOException("Index in file " + file + " is corrupted");
+        }
+      }
+      return new NgramIndex(blockSize, dataLength, fingerprint, offsets, postings);
+    }
+  }
+  //</editor-fold>
+
+  /**
+   * Returns size of blocks of data.
+   *
+   * @return Size of block in bytes
+   */
+  public int getBlockSize() { return m_blockSize; }
+
+  /**
+   * Returns length of indexed data.
+   *
+   * @return Length of data in bytes
+   */
+  public long getDataLength() { return m_dataLength; }
+
+  /**
+   * Returns size of lists of blocks in memory and in the sidecar file.
+   *
+   * @return Size of index in bytes, without constant size tables
+   */
+  public long getSize() { return m_postings.length; }
+
+  /**
+   * Checks, that index was built for the specified data: compares length of
+   * data and checksum of its start and end. Reads up to 128 KiB of data.
+   *
+   * @param data Provider with data
+   *
+   * @return {@code true}, if index corresponds to data
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   */
+  public boolean isValidFor(IDataProvider data)
+  {
+    final long length = data.getDataLengthLong();
+    return length == m_dataLength && fingerprint(data, length) == m_fingerprint;
+  }
+
+  /**
+   * Returns blocks, in which the sequence of bytes can start. Result contains
+   * all blocks with occurrences of sequence, and can contain some blocks without
+   * them.
+   *
+   * @param literal Sequence of bytes, not shorter than {@link #GRAM_LENGTH}
+   *
+   * @return Indexes of blocks, in which sequence can start
+   */
+  BitSet candidates(byte[] literal)
+  {
+    // Occurrence, that starts in block b, has each of first blockSize 3-grams in block b or b+1
+    final int grams = Math.min(literal.length - GRAM_LENGTH + 1, m_blockSize);
+    // Intersect shortest lists first: result becomes small quickly
+    final long[] order = new long[grams];
+    for (int k = 0; k < grams; ++k) {
+      final int gram = FOLD[literal[k] & 0xFF] << 16
+                     | FOLD[literal[k + 1] & 0xFF] << 8
+                     | FOLD[literal[k + 2] & 0xFF];
+      final int h = bucket(gram);
+      order[k] = (long)(m_offsets[h + 1] - m_offsets[h]) << 32 | h;
+    }
+    Arrays.sort(order);
+    BitSet result = null;
+    for (int k = 0; k < grams; ++k) {
+      if (k > 0 && order[k] == order[k - 1]) {
+        continue;
+      }
+      final BitSet blocks = blocks((int)order[k]);
+      // Mark block b, if 3-gram occurs in block b + 1
+      blocks.or(blocks.get(1, Math.max(1, blocks.length())));
+      if (result == null) {
+        result = blocks;
+      } else {
+        result.and(blocks);
+      }
+      if (result.isEmpty()) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Decodes list of blocks of the bucket.
+   */
+  private BitSet blocks(int bucket)
+  {
+    final BitSet result = new BitSet();
+    int block = -1;
+    for (int p = m_offsets[bucket]; p < m_offsets[bucket + 1];) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = m_postings[p++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      block += delta;
+      result.set(block);
+    }
+    return result;
+  }
+
+  /**
+   * Checks, that list of blocks of the bucket can be {@link #blocks decoded}:
+   * each number is complete and fits into {@code int}, and blocks strictly
+   * increase and exist in data.
+   */
+  private static boolean isValidBucket(byte[] postings, int start, int end, long blockCount)
+  {
+    long block = -1;
+    for (int p = start; p < end;) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (p >= end || shift > 28) {
+          return false;
+        }
+        b = postings[p++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      if (delta <= 0) {
+        return false;
+      }
+      block += delta;
+      if (block >= blockCount) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int bucket(int gram)
+  {
+    return (gram * 0x9E3779B1) >>> (32 - BUCKET_BITS);
+  }
+
+  private static int varIntSize(int value)
+  {
+    int size = 1;
+    while ((value >>>= 7) != 0) {
+      ++size;
+    }
+    return size;
+  }
+
+  private static int writeVarInt(byte[] buffer, int index, int value)
+  {
+    while ((value & ~0x7F) != 0) {
+      buffer[index++] = (byte)(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    buffer[index++] = (byte)value;
+    return index;
+  }
+}
@@ -0,0 +1,253 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.Arrays;
+
+/**
+ * Set of exact patterns, compiled into an Aho-Corasick automaton, that finds
+ * all patterns of the set in one pass over data. Time of search does not depend
+ * on count of patterns: automaton makes one transition per byte of data, and
+ * spends additional time only for reporting of found matches.
+ * <p>
+ * Automaton is deterministic: failure transitions are resolved at compilation,
+ * and all transitions are stored in one flat table with 256 entries per state.
+ * Count of states does not exceed total length of patterns plus one, so set of
+ * hundred patterns of 16 bytes takes less than 2 MiB.
+ * <p>
+ * Sets are immutable and can be used by several searches simultaneously.
+ *
+ * @see SearchEngine#findAll(long, long, PatternSet, IPatternMatchListener)
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class PatternSet
+{
+  /** Maximum count of states, for which indexes of rows in the table fit into {@code int}. */
+  private static final int MAX_STATES = Integer.MAX_VALUE >> 8;
+
+  /** Lengths of patterns. */
+  private final int[] m_lengths;
+  /** Patterns in the original case. */
+  private final byte[][] m_patterns;
+  /**
+   * Transition table: for state with index {@code s} and byte {@code b} entry
+   * {@code (s << 8) | b} contains index of the next state, multiplied by 256,
+   * so it can be used as a base of the next row without multiplication. The
+   * lowest bit of entry is set, if some patterns end in the next state.
+   */
+  private final int[] m_transitions;
+  /**
+   * Start of list of patterns, found in state {@code s}, in {@link #m_outputs}.
+   * List ends at {@code m_outputStart[s + 1]}.
+   */
+  private final int[] m_outputStart;
+  /** Indexes of patterns, found in each state, including patterns found by failure links. */
+  private final int[] m_outputs;
+
+  /**
+   * Compiles set of patterns, which are compared with data exactly.
+   *
+   * @param patterns Patterns to search, must not be empty. Arrays are copied
+   *
+   * @throws NullPointerException If {@code patterns} or any of patterns is {@code null}
+   * @throws IllegalArgumentException If set or any of patterns is empty or patterns
+   *         are too long for one automaton
+   */
+  public PatternSet(byte[]... patterns)
+  {
+    this(true, patterns);
+  }
+
+  /**
+   * Compiles set of patterns.
+   *
+   * @param caseSensitive If {@code false}, ASCII letters in data and patterns
+   *        are compared case-insensitively
+   * @param patterns Patterns to search, must not be empty. Arrays are copied
+   *
+   * @throws NullPointerException If {@code patterns} or any of patterns is {@code null}
+   * @throws IllegalArgumentException If set or any of patterns is empty or patterns
+   *         are too long for one automaton
+   */
+  public PatternSet(boolean caseSensitive, byte[]... patterns)
+  {
+    if (patterns.length == 0) {
+      throw new IllegalArgumentException("Set of patterns must not be empty");
+    }
+    m_patterns = new byte[patterns.length][];
+    m_lengths = new int[patterns.length];
+    long total = 1;
+    for (int i = 0; i < patterns.length; ++i) {
+      if (patterns[i].length == 0) {
+        throw new IllegalArgumentException("Pattern " + i + " is empty");
+      }
+      m_patterns[i] = patterns[i].clone();
+      m_lengths[i] = patterns[i].length;
+      total += patterns[i].length;
+    }
+    if (total > MAX_STATES) {
+      throw new IllegalArgumentException("Total length of patterns " + (total - 1)
+        + " exceeds maximum " + (MAX_STATES - 1));
+    }
+
+    // Build trie. Missing transitions are marked by 0, because root can not be a target
+    int[] table = new int[256 * (int)Math.min(total, 1024)];
+    int states = 1;
+    final int[] terminals = new int[patterns.length];
+    for (int i = 0; i < patterns.length; ++i) {
+      int row = 0;
+      for (final byte value : m_patterns[i]) {
+        final int index = row | fold(value & 0xFF, caseSensitive);
+        if (table[index] == 0) {
+          if (table.length == states << 8) {
+            table = Arrays.copyOf(table, (int)Math.min(2L * states, total) << 8);
+          }
+          table[index] = states++ << 8;
+        }
+        row = table[index];
+      }
+      terminals[i] = row >> 8;
+    }
+    m_transitions = table.length == states << 8 ? table : Arrays.copyOf(table, states << 8);
+
+    // Count patterns, that end in each state
+    final int[] own = new int[states + 1];
+    for (final int state : terminals) {
+      ++own[state + 1];
+    }
+    for (int s = 0; s < states; ++s) {
+      own[s + 1] += own[s];
+    }
+    final int[] ownIds = new int[patterns.length];
+    final int[] fill = Arrays.copyOf(own, states);
+    for (int i = 0; i < patterns.length; ++i) {
+      ownIds[fill[terminals[i]]++] = i;
+    }
+
+    // Breadth-first traversal resolves failure links, so states are completed
+    // after their failure states. Root transitions need no resolving
+    final int[] queue = new int[states];
+    final int[] failure = new int[states];
+    final int[] outputCount = new int[states];
+    int head = 0;
+    int tail = 0;
+    for (int b = 0; b < 256; ++b) {
+      final int child = m_transitions[b] >> 8;
+      if (child != 0) {
+        queue[tail++] = child;
+      }
+    }
+    while (head < tail) {
+      final int state = queue[head++];
+      final int row = state << 8;
+      final int failRow = failure[state] << 8;
+      outputCount[state] = own[state + 1] - own[state] + outputCount[failure[state]];
+      for (int b = 0; b < 256; ++b) {
+        final int child = m_transitions[row | b] >> 8;
+        if (child != 0) {
+          failure[child] = m_transitions[failRow | b] >> 8;
+          queue[tail++] = child;
+        } else {
+          m_transitions[row | b] = m_transitions[failRow | b];
+        }
+      }
+    }
+    if (!caseSensitive) {
+      for (int s = 0; s < states; ++s) {
+        System.arraycopy(m_transitions, (s << 8) | 'a', m_transitions, (s << 8) | 'A', 26);
+      }
+    }
+
+    // Lists of found patterns: own patterns of state, then patterns of its failure state
+    m_outputStart = new int[states + 1];
+    for (int s = 0; s < states; ++s) {
+      m_outputStart[s + 1] = m_outputStart[s] + outputCount[s];
+    }
+    m_outputs = new int[m_outputStart[states]];
+    for (int i = 0; i < tail; ++i) {
+      final int state = queue[i];
+      final int start = m_outputStart[state];
+      final int count = own[state + 1] - own[state];
+      System.arraycopy(ownIds, own[state], m_outputs, start, count);
+      final int fail = failure[state];
+      System.arraycopy(m_outputs, m_outputStart[fail], m_outputs, start + count, outputCount[fail]);
+    }
+    // Mark transitions into states with patterns, so search checks only one bit per byte
+    for (int i = 0; i < m_transitions.length; ++i) {
+      if (outputCount[m_transitions[i] >> 8] != 0) {
+        m_transitions[i] |= 1;
+      }
+    }
+  }
+
+  /**
+   * Returns count of patterns in the set.
+   *
+   * @return Count of patterns
+   */
+  public int size() { return m_patterns.length; }
+
+  /**
+   * Returns pattern with the specified index.
+   *
+   * @param patternId Index of pattern in range {@code [0; size())}
+   *
+   * @return Copy of the pattern
+   */
+  public byte[] getPattern(int patternId) { return m_patterns[patternId].clone(); }
+
+  /**
+   * Returns length of pattern with the specified index.
+   *
+   * @param patternId Index of pattern in range {@code [0; size())}
+   *
+   * @return Length of the pattern in bytes
+   */
+  public int getPatternLength(int patternId) { return m_lengths[patternId]; }
+
+  /**
+   * Returns count of states of the automaton.
+   *
+   * @return Count of states, including the initial state
+   */
+  public int getStateCount() { return m_outputStart.length - 1; }
+
+  /**
+   * Runs automaton over the part of buffer and reports all patterns, that end
+   * in that part.
+   *
+   * @param buffer Buffer with data
+   * @param from Index of the first byte to process, inclusive
+   * @param to Index of the last byte to process, exclusive
+   * @param row State of automaton before the first byte, as returned by the
+   *        previous call, or 0 at the start of data
+   * @param offset Offset of the first byte of buffer in data
+   * @param listener Receiver of matches
+   *
+   * @return State of automaton after the last byte
+   */
+  int scan(byte[] buffer, int from, int to, int row, long offset, IPatternMatchListener listener)
+  {
+    final int[] transitions = m_transitions;
+    for (int i = from; i < to; ++i) {
+      final int next = transitions[row | buffer[i] & 0xFF];
+      row = next & ~0xFF;
+      if ((next & 1) != 0) {
+        final int state = row >> 8;
+        final int end = m_outputStart[state + 1];
+        for (int j = m_outputStart[state]; j < end; ++j) {
+          final int id = m_outputs[j];
+          listener.patternFound(id, offset + i + 1 - m_lengths[id]);
+        }
+      }
+    }
+    return row;
+  }
+
+  private static int fold(int value, boolean caseSensitive)
+  {
+    return !caseSensitive && value >= 'A' && value <= 'Z' ? value - 'A' + 'a' : value;
+  }
+}
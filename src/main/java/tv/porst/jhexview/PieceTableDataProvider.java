@@ -0,0 +1,771 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Data provider that keeps modifications of another, usually read-only, provider
+ * in memory. Content of the provider is described by a sequence of <em>pieces</em>,
+ * each of which refers either to a range of the wrapped (base) provider or to
+ * a range of the buffer with written bytes. Writes never reach the base provider,
+ * so it can be a {@link MappedFileDataProvider memory-mapped file} or a remote
+ * source. Reads stitch pieces together, reading unmodified data directly from
+ * the base provider, so memory consumption is proportional to the size of
+ * modifications only, not to the size of data.
+ * <p>
+ * Provider supports {@link #insertData insertion} and {@link #removeData removing}
+ * of data, which do not move any bytes, so they are cheap even for huge data.
+ * Removed data can be inserted back from a snapshot, taken before removing,
+ * also without copying.
+ * <p>
+ * Pieces are stored in a balanced tree (treap with implicit keys), so
+ * modification and lookup of any offset takes {@code O(log n)} time, where
+ * {@code n} is count of pieces. Nodes of the tree and written bytes are never
+ * changed after creation, so reading threads do not need synchronization with
+ * the writing thread.
+ * <p>
+ * Because of that {@link #snapshot() snapshots} of content take constant time
+ * and memory: snapshot just holds the root of the tree. Snapshot stays
+ * consistent while the base provider does not change.
+ * <p>
+ * Length of the base provider must not change while it is wrapped.
+ * <p>
+ * Note that {@link #getDataLength()} returns {@link Integer#MAX_VALUE} if
+ * content grows beyond 2 GiB, use {@link #getDataLengthLong()} instead.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class PieceTableDataProvider extends AbstractDataProvider implements ISnapshotDataProvider
+{
+  /** Minimum size of chunk in which written bytes are stored. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /** The provider which data is modified. */
+  private final IDataProvider m_base;
+  /** Root of the tree with unmodified data of base provider. */
+  private final Node m_original;
+  /** Root of the tree of pieces, {@code null} if provider is empty. */
+  private volatile Node m_root;
+  /** Version of content, increased on each change under lock together with {@link #m_root}. */
+  private volatile long m_version;
+
+  /** Current chunk for written bytes. Bytes in chunk are never changed after writing. */
+  private byte[] m_chunk = new byte[0];
+  /** Count of used bytes in the {@link #m_chunk}. */
+  private int m_chunkUsed;
+
+  /** Listener that forwards notifications of base provider. */
+  private final InternalListener m_listener = new InternalListener();
+
+  /**
+   * Creates provider without modifications, which content is equal to content
+   * of the base provider.
+   *
+   * @param base Provider which data will be modified
+   *
+   * @throws NullPointerException If {@code base} is {@code null}
+   */
+  public PieceTableDataProvider(IDataProvider base)
+  {
+    if (base == null) {
+      throw new NullPointerException("Base data provider can't be null");
+    }
+    final long length = base.getDataLengthLong();
+    m_base = base;
+    m_original = length > 0 ? new Node(null, 0, length, random(), null, null) : null;
+    m_root = m_original;
+    base.addListener(m_listener);
+  }
+
+  /**
+   * Returns the provider which data is modified.
+   *
+   * @return The wrapped provider, never {@code null}
+   */
+  public IDataProvider getBase() { return m_base; }
+
+  /**
+   * Returns whether content of this provider differs from content of base provider.
+   * Note that overwriting of byte with the same value is considered as modification.
+   *
+   * @return {@code true}, if provider contains any modifications
+   */
+  public boolean isModified()
+  {
+    return m_root != m_original;
+  }
+
+  /**
+   * Returns count of pieces, that describe current content. Each modification
+   * adds at most two pieces.
+   *
+   * @return Count of pieces, {@code 0} if provider is empty
+   */
+  public int getPieceCount()
+  {
+    return count(m_root);
+  }
+
+  /**
+   * Returns ranges of content, that differ from content of base provider at the
+   * same offsets: written bytes and unmodified data of base provider, that was
+   * moved by insertion or removing of data. Range of data beyond the end of
+   * base provider is always included. Adjacent ranges are merged.
+   *
+   * @return Array of ranges in increasing order, each range is represented by two
+   *         consecutive elements: start offset (inclusive) and end offset (exclusive)
+   *
+   * @see DataSaver#writeRanges
+   */
+  public long[] getModifiedRanges()
+  {
+    final RangeCollector collector = new RangeCollector();
+    collector.collect(m_root, 0);
+    return Arrays.copyOf(collector.ranges, collector.count);
+  }
+
+  /**
+   * Returns whether some unmodified data of base provider is placed at other
+   * offsets, than in base provider, because of insertion or removing of data.
+   * If base provider reads data from a file, such content can not be saved
+   * into the same file in place.
+   *
+   * @return {@code true}, if some data of base provider was moved
+   */
+  public boolean hasMovedData()
+  {
+    final RangeCollector collector = new RangeCollector();
+    collector.collect(m_root, 0);
+    return collector.moved;
+  }
+
+  @Override
+  public long getVersion() { return m_version; }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Snapshot is created in constant time and does not copy any data.
+   */
+  @Override
+  public synchronized IDataSnapshot snapshot()
+  {
+    return new Snapshot(m_root, m_version);
+  }
+
+  /** Discards all modifications, so content again equals to content of base provider. */
+  public void revert()
+  {
+    synchronized (this) {
+      if (!isModified()) {
+        return;
+      }
+      m_root = m_original;
+      ++m_version;
+      m_chunk = new byte[0];
+      m_chunkUsed = 0;
+    }
+    fireDataChangedListener();
+  }
+
+  /**
+   * Unsubscribes from notifications of the base provider. Call this method
+   * when this provider is no longer needed, but the base provider still used.
+   */
+  public void dispose()
+  {
+    m_base.removeListener(m_listener);
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    final Node root = m_root;
+    final long rest = size(root) - offset;
+    if (length > rest) {
+      length = (int)rest;
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    read(root, offset, result, 0, length);
+    return result;
+  }
+
+  @Override
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    final Node root = m_root;
+    final long rest = size(root) - offset;
+    if (length > rest) {
+      length = (int)rest;
+    }
+    if (length <= 0) {
+      return 0;
+    }
+    read(root, offset, buffer, bufferOffset, length);
+    return length;
+  }
+
+  @Override
+  public int getDataLength()
+  {
+    return (int)Math.min(getDataLengthLong(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public long getDataLengthLong()
+  {
+    return size(m_root);
+  }
+
+  @Override
+  public boolean hasData(long offset, int length)
+  {
+    final Node root = m_root;
+    final long rest = size(root) - offset;
+    if (length > rest) {
+      length = (int)rest;
+    }
+    return offset >= 0 && (length <= 0 || hasData(root, offset, length));
+  }
+
+  /** @return Always {@code true} */
+  @Override
+  public boolean isEditable()
+  {
+    return true;
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return m_base.keepTrying();
+  }
+
+  /**
+   * Overwrites data at the specified offset. Base provider is not changed.
+   * Data that does not fit into the current length of the provider is ignored.
+   *
+   * @param offset The start offset for the data to be written.
+   * @param data The data to write.
+   */
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    final int length;
+    synchronized (this) {
+      final Node root = m_root;
+      length = (int)Math.min(data.length, size(root) - offset);
+      if (offset < 0 || length <= 0) {
+        return;
+      }
+      final Node[] left  = split(root, offset);
+      final Node[] right = split(left[1], length);
+      m_root = merge(append(left[0], data, 0, length), right[1]);
+      ++m_version;
+    }
+    fireDataChangedListener(offset, length);
+  }
+
+  /** @return Always {@code true} */
+  @Override
+  public boolean isResizable()
+  {
+    return true;
+  }
+
+  /**
+   * Inserts data at the specified offset. Base provider is not changed.
+   *
+   * @param offset The offset in range {@code [0; getDataLengthLong()]} at which data is inserted.
+   * @param data The data to insert.
+   *
+   * @throws IndexOutOfBoundsException If {@code offset} is outside of data
+   */
+  @Override
+  public void insertData(long offset, byte[] data)
+  {
+    synchronized (this) {
+      final Node root = m_root;
+      if (offset < 0 || offset > size(root)) {
+        throw new IndexOutOfBoundsException("Offset " + offset + " outside of data of length " + size(root));
+      }
+      if (data.length == 0) {
+        return;
+      }
+      final Node[] parts = split(root, offset);
+      m_root = merge(append(parts[0], data, 0, data.length), parts[1]);
+      ++m_version;
+    }
+    fireDataChangedListener(offset, -1);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * If the source is a {@link #snapshot() snapshot} of this provider, its pieces
+   * are inserted without copying of data, so insertion takes {@code O(log n)}
+   * time regardless of the length of data. Data of other sources is copied.
+   *
+   * @throws IndexOutOfBoundsException If {@code offset} is outside of data or
+   *         source does not contain requested data
+   */
+  @Override
+  public void insertData(long offset, IDataProvider source, long sourceOffset, long length)
+  {
+    if (!(source instanceof Snapshot) || ((Snapshot)source).getProvider() != this) {
+      ISnapshotDataProvider.super.insertData(offset, source, sourceOffset, length);
+      return;
+    }
+    final Node pieces = ((Snapshot)source).root;
+    if (sourceOffset < 0 || length < 0 || sourceOffset + length > size(pieces)) {
+      throw new IndexOutOfBoundsException("Range [" + sourceOffset + "; " + (sourceOffset + length)
+        + ") outside of snapshot of length " + size(pieces));
+    }
+    synchronized (this) {
+      final Node root = m_root;
+      if (offset < 0 || offset > size(root)) {
+        throw new IndexOutOfBoundsException("Offset " + offset + " outside of data of length " + size(root));
+      }
+      if (length == 0) {
+        return;
+      }
+      final Node[] left  = split(pieces, sourceOffset);
+      final Node[] right = split(left[1], length);
+      final Node[] parts = split(root, offset);
+      m_root = merge(merge(parts[0], right[0]), parts[1]);
+      ++m_version;
+    }
+    fireDataChangedListener(offset, -1);
+  }
+
+  /**
+   * Removes data at the specified offset. Base provider is not changed.
+   * Range that exceeds the current length of the provider is truncated.
+   *
+   * @param offset The start offset of the data to remove.
+   * @param length The count of bytes to remove.
+   */
+  @Override
+  public void removeData(long offset, long length)
+  {
+    synchronized (this) {
+      final Node root = m_root;
+      length = Math.min(length, size(root) - offset);
+      if (offset < 0 || length <= 0) {
+        return;
+      }
+      final Node[] left  = split(root, offset);
+      final Node[] right = split(left[1], length);
+      m_root = merge(left[0], right[1]);
+      ++m_version;
+    }
+    fireDataChangedListener(offset, -1);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Tree operations">
+  /**
+   * Node of the tree. Each node describes one piece of content and holds size
+   * of all pieces in its subtree. Nodes are immutable, so modification of the
+   * tree copies all nodes on path from the root to the modified node.
+   */
+  private static final class Node
+  {
+    /** Array with bytes of the piece or {@code null}, if piece refers to the base provider. */
+    final byte[] data;
+    /** Offset of the piece in {@link #data} or in the base provider. */
+    final long start;
+    /** Length of the piece in bytes. */
+    final long length;
+    /** Priority of the node. Priority of node is not less than priorities of its children. */
+    final int priority;
+    final Node left;
+    final Node right;
+    /** Total length of all pieces in the subtree. */
+    final long size;
+
+    Node(byte[] data, long start, long length, int priority, Node left, Node right)
+    {
+      this.data = data;
+      this.start = start;
+      this.length = length;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + length + size(right);
+    }
+
+    Node withChildren(Node left, Node right)
+    {
+      return new Node(data, start, length, priority, left, right);
+    }
+  }
+
+  private static long size(Node node)
+  {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int count(Node node)
+  {
+    return node == null ? 0 : count(node.left) + 1 + count(node.right);
+  }
+
+  private static int random()
+  {
+    return ThreadLocalRandom.current().nextInt();
+  }
+
+  /**
+   * Splits tree into two trees, the first of which contains the first {@code offset}
+   * bytes of content, and the second - the rest bytes. Piece, that contains the
+   * split point, is divided into two pieces.
+   *
+   * @param node Root of the tree to split, can be {@code null}
+   * @param offset Count of bytes, which will be placed in the first tree
+   *
+   * @return Array with roots of two trees, each of them can be {@code null}
+   */
+  private static Node[] split(Node node, long offset)
+  {
+    if (node == null) {
+      return new Node[2];
+    }
+    final long leftSize = size(node.left);
+    if (offset <= leftSize) {
+      final Node[] result = split(node.left, offset);
+      result[1] = node.withChildren(result[1], node.right);
+      return result;
+    }
+    final long pieceEnd = leftSize + node.length;
+    if (offset >= pieceEnd) {
+      final Node[] result = split(node.right, offset - pieceEnd);
+      result[0] = node.withChildren(node.left, result[0]);
+      return result;
+    }
+    // Split point inside the piece. Both parts keep the priority of the node,
+    // which is not less than priorities of their children
+    final long cut = offset - leftSize;
+    return new Node[] {
+      new Node(node.data, node.start, cut, node.priority, node.left, null),
+      new Node(node.data, node.start + cut, node.length - cut, node.priority, null, node.right),
+    };
+  }
+
+  /**
+   * Concatenates two trees.
+   *
+   * @param left Root of the tree with the first part of content, can be {@code null}
+   * @param right Root of the tree with the second part of content, can be {@code null}
+   *
+   * @return Root of the tree with all pieces of both trees
+   */
+  private static Node merge(Node left, Node right)
+  {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      return left.withChildren(left.left, merge(left.right, right));
+    }
+    return right.withChildren(merge(left, right.left), right.right);
+  }
+
+  /**
+   * Returns the node with the last piece of the tree.
+   *
+   * @param node Root of the tree, must not be {@code null}
+   *
+   * @return The rightmost node
+   */
+  private static Node last(Node node)
+  {
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node;
+  }
+
+  /**
+   * Replaces the last piece of the tree with the piece, longer by specified count of bytes.
+   *
+   * @param node Root of the tree, must not be {@code null}
+   * @param extra Count of bytes to add to the last piece
+   *
+   * @return Root of the new tree
+   */
+  private static Node extendLast(Node node, long extra)
+  {
+    if (node.right != null) {
+      return node.withChildren(node.left, extendLast(node.right, extra));
+    }
+    return new Node(node.data, node.start, node.length + extra, node.priority, node.left, null);
+  }
+
+  /**
+   * Stores bytes in the chunk and adds piece with them to the end of the tree.
+   * If the last piece of the tree ends exactly where stored bytes start, that
+   * piece is extended instead, so sequential writes do not increase count of pieces.
+   *
+   * @param node Root of the tree, can be {@code null}
+   * @param data Array with bytes to store
+   * @param offset Offset of the first byte in {@code data}
+   * @param length Count of bytes to store
+   *
+   * @return Root of the new tree
+   */
+  private Node append(Node node, byte[] data, int offset, int length)
+  {
+    if (m_chunk.length - m_chunkUsed < length) {
+      m_chunk = new byte[Math.max(CHUNK_SIZE, length)];
+      m_chunkUsed = 0;
+    }
+    final int start = m_chunkUsed;
+    System.arraycopy(data, offset, m_chunk, start, length);
+    m_chunkUsed += length;
+
+    if (node != null) {
+      final Node last = last(node);
+      if (last.data == m_chunk && last.start + last.length == start) {
+        return extendLast(node, length);
+      }
+    }
+    return merge(node, new Node(m_chunk, start, length, random(), null, null));
+  }
+
+  /**
+   * Reads content of the tree into buffer. Requested range must be inside the tree.
+   *
+   * @param node Root of the tree
+   * @param offset Offset of the first byte to read relative to the start of the tree
+   * @param buffer The buffer into which the data is read
+   * @param bufferOffset The start offset in the buffer
+   * @param length Count of bytes to read
+   */
+  private void read(Node node, long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    while (length > 0) {
+      final long leftSize = size(node.left);
+      if (offset < leftSize) {
+        final int count = (int)Math.min(length, leftSize - offset);
+        read(node.left, offset, buffer, bufferOffset, count);
+        offset += count;
+        bufferOffset += count;
+        length -= count;
+      }
+      final long inPiece = offset - leftSize;
+      if (length > 0 && inPiece < node.length) {
+        final int count = (int)Math.min(length, node.length - inPiece);
+        if (node.data == null) {
+          m_base.getData(node.start + inPiece, buffer, bufferOffset, count);
+        } else {
+          System.arraycopy(node.data, (int)(node.start + inPiece), buffer, bufferOffset, count);
+        }
+        offset += count;
+        bufferOffset += count;
+        length -= count;
+      }
+      // Continue with the right subtree without recursion
+      offset -= leftSize + node.length;
+      node = node.right;
+    }
+  }
+
+  /**
+   * Checks, that the base provider has data for all pieces in the range, that
+   * refer to it. Requested range must be inside the tree.
+   *
+   * @param node Root of the tree
+   * @param offset Offset of the first byte relative to the start of the tree
+   * @param length Count of bytes to check
+   *
+   * @return {@code true}, if all data in the range is available
+   */
+  private boolean hasData(Node node, long offset, int length)
+  {
+    while (length > 0) {
+      final long leftSize = size(node.left);
+      if (offset < leftSize) {
+        final int count = (int)Math.min(length, leftSize - offset);
+        if (!hasData(node.left, offset, count)) {
+          return false;
+        }
+        offset += count;
+        length -= count;
+      }
+      final long inPiece = offset - leftSize;
+      if (length > 0 && inPiece < node.length) {
+        final int count = (int)Math.min(length, node.length - inPiece);
+        if (node.data == null && !m_base.hasData(node.start + inPiece, count)) {
+          return false;
+        }
+        offset += count;
+        length -= count;
+      }
+      offset -= leftSize + node.length;
+      node = node.right;
+    }
+    return true;
+  }
+
+  /** Collects modified ranges of the tree. */
+  private static final class RangeCollector
+  {
+    /** Start and end offsets of ranges. */
+    long[] ranges = new long[16];
+    /** Count of used elements of {@link #ranges}. */
+    int count;
+    /** Whether some data of base provider was moved. */
+    boolean moved;
+
+    /**
+     * Collects modified ranges of the subtree.
+     *
+     * @param node Root of the subtree
+     * @param position Offset of the first byte of subtree
+     */
+    void collect(Node node, long position)
+    {
+      while (node != null) {
+        collect(node.left, position);
+        position += size(node.left);
+        if (node.data != null || node.start != position) {
+          moved |= node.data == null;
+          add(position, position + node.length);
+        }
+        position += node.length;
+        node = node.right;
+      }
+    }
+
+    private void add(long start, long end)
+    {
+      if (count > 0 && ranges[count - 1] == start) {
+        ranges[count - 1] = end;
+        return;
+      }
+      if (count == ranges.length) {
+        ranges = Arrays.copyOf(ranges, 2 * count);
+      }
+      ranges[count++] = start;
+      ranges[count++] = end;
+    }
+  }
+  //</editor-fold>
+
+  /**
+   * Listener is moved into an internal class to avoid publishing the
+   * listener methods in the public interface of the provider.
+   */
+  private class InternalListener implements IDataChangedListener
+  {
+    @Override
+    public void dataChanged(DataChangedEvent event)
+    {
+      synchronized (PieceTableDataProvider.this) {
+        ++m_version;
+      }
+      fireDataChangedListener();
+    }
+  }
+
+  /** Snapshot that holds the root of the tree at some version. */
+  private final class Snapshot extends AbstractDataProvider implements IDataSnapshot
+  {
+    private final Node root;
+    private final long version;
+
+    Snapshot(Node root, long version)
+    {
+      this.root = root;
+      this.version = version;
+    }
+
+    @Override
+    public long getVersion() { return version; }
+
+    /** Returns the provider, which content is captured by this snapshot. */
+    PieceTableDataProvider getProvider() { return PieceTableDataProvider.this; }
+
+    @Override
+    public byte[] getData(long offset, int length)
+    {
+      final long rest = size(root) - offset;
+      if (length > rest) {
+        length = (int)rest;
+      }
+      if (length <= 0) {
+        return new byte[0];
+      }
+      final byte[] result = new byte[length];
+      read(root, offset, result, 0, length);
+      return result;
+    }
+
+    @Override
+    public int getData(long offset, byte[] buffer, int bufferOffset, int length)
+    {
+      final long rest = size(root) - offset;
+      if (length > rest) {
+        length = (int)rest;
+      }
+      if (length <= 0) {
+        return 0;
+      }
+      read(root, offset, buffer, bufferOffset, length);
+      return length;
+    }
+
+    @Override
+    public int getDataLength()
+    {
+      return (int)Math.min(size(root), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getDataLengthLong()
+    {
+      return size(root);
+    }
+
+    @Override
+    public boolean hasData(long offset, int length)
+    {
+      final long rest = size(root) - offset;
+      if (length > rest) {
+        length = (int)rest;
+      }
+      return offset >= 0 && (length <= 0 || PieceTableDataProvider.this.hasData(root, offset, length));
+    }
+
+    /** @return Always {@code false} */
+    @Override
+    public boolean isEditable()
+    {
+      return false;
+    }
+
+    @Override
+    public boolean keepTrying()
+    {
+      return m_base.keepTrying();
+    }
+
+    /**
+     * Always throws {@link UnsupportedOperationException}, because snapshot is immutable.
+     */
+    @Override
+    public void setData(long offset, byte[] data)
+    {
+      throw new UnsupportedOperationException("Snapshot is immutable");
+    }
+  }
+}
@@ -0,0 +1,1059 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Searches data of a provider. Engine streams data of the provider through
+ * a reusable window of {@link #DEFAULT_WINDOW_SIZE large size} and runs the
+ * search algorithm directly on the window, so search does one provider call
+ * per window and does not allocate memory per compared byte. Consecutive
+ * windows overlap by length of the pattern minus one byte, so matches, that
+ * cross boundary of windows, are not missed.
+ * <p>
+ * Exact patterns are searched by the Boyer-Moore algorithm, which usually
+ * skips most bytes of data. Throughput target is at least 500 MB/s on one
+ * core for patterns of 8 bytes and longer (about 400 MB/s for 4 bytes), when
+ * data is in memory or in the OS cache, so searching of a 1 GB
+ * {@link MappedFileDataProvider mapped file} takes about two seconds. For data
+ * on disk throughput is limited by the speed of the disk.
+ * <p>
+ * Big ranges can be searched {@link #findParallel in parallel}: range is split
+ * into segments, which are scanned by a {@link ForkJoinPool}. Each segment is
+ * read to the end of the pattern, that starts at the last byte of the segment,
+ * so segments overlap like windows. When a match is found, segments after it
+ * are skipped and scanning of other segments stops at the found offset.
+ * <p>
+ * Repeated searches in data, that does not change, can use {@link NgramIndex
+ * index of data}, set by {@link #setIndex}: engine then scans only blocks of
+ * data, that contain all 3-grams of the pattern.
+ * <p>
+ * In {@link ISparseDataProvider sparse} data only mapped regions are scanned,
+ * gaps between them are skipped without reading, and matches never span gaps.
+ * <p>
+ * Engine is not thread-safe, because it reuses one window. Use separate
+ * engines to search in several threads simultaneously.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class SearchEngine
+{
+  /** Default size of window, in which data is read (1 MiB). */
+  public static final int DEFAULT_WINDOW_SIZE = 1 << 20;
+  /** Maximum size of segment, that is scanned by one task of parallel search (64 MiB). */
+  private static final long MAX_SEGMENT_SIZE = 64L << 20;
+  /** Desired count of segments per thread in parallel search, for load balancing. */
+  private static final int SEGMENTS_PER_THREAD = 4;
+
+  /** Provider with data to search. */
+  private final IDataProvider m_data;
+  /** Window with data. Grows, if pattern does not fit into it. */
+  private byte[] m_window;
+  /** Listener that is notified about progress, can be {@code null}. */
+  private volatile IProgressListener m_listener;
+  /** Count of scanned bytes in the current search. */
+  private final AtomicLong m_processed = new AtomicLong();
+  /** Count of bytes, that will be scanned in the current search. */
+  private volatile long m_total;
+  /** Index of data, that limits scanning to candidate blocks, or {@code null}. */
+  private NgramIndex m_index;
+
+  /**
+   * Creates engine with the {@link #DEFAULT_WINDOW_SIZE default} window size.
+   *
+   * @param data Provider with data to search
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   */
+  public SearchEngine(IDataProvider data)
+  {
+    this(data, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Creates engine with the specified window size.
+   *
+   * @param data Provider with data to search
+   * @param windowSize Size of window, in which data is read, must be positive
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   * @throws IllegalArgumentException If {@code windowSize} is not positive
+   */
+  public SearchEngine(IDataProvider data, int windowSize)
+  {
+    if (data == null) {
+      throw new NullPointerException("Data provider for search can't be null");
+    }
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+    }
+    m_data = data;
+    m_window = new byte[windowSize];
+  }
+
+  /**
+   * Returns the provider, which data is searched.
+   *
+   * @return The provider, never {@code null}
+   */
+  public IDataProvider getData() { return m_data; }
+
+  /**
+   * Sets the listener, that will be notified about count of scanned bytes after
+   * each window. At start of each search listener is notified with zero count
+   * and count of bytes, that will be scanned, which is less than length of
+   * the range, when {@link #setIndex index} is used. In parallel search listener
+   * is called from threads of the pool.
+   * Listener can stop search by throwing an unchecked exception, for example,
+   * {@link java.util.concurrent.CancellationException}, which is propagated
+   * to the caller of search method.
+   *
+   * @param listener Listener or {@code null}, if progress is not required
+   */
+  public void setProgressListener(IProgressListener listener)
+  {
+    m_listener = listener;
+  }
+
+  /**
+   * Returns index, which is used to find candidates for matches.
+   *
+   * @return Index of data or {@code null}, if the whole range is scanned
+   */
+  public NgramIndex getIndex() { return m_index; }
+
+  /**
+   * Sets index, which is used to find candidates for matches. When index is
+   * set, search of patterns, that contain at least {@link NgramIndex#GRAM_LENGTH}
+   * fixed bytes, scans only blocks of data, in which index finds all 3-grams
+   * of these bytes, and parallel search scans them sequentially. Other patterns
+   * are searched without index. Index is ignored, if length of data changes.
+   *
+   * @param index Index of data or {@code null}, to scan the whole range
+   *
+   * @throws IllegalArgumentException If index was {@link NgramIndex#isValidFor built for other data}
+   */
+  public void setIndex(NgramIndex index)
+  {
+    if (index != null && !index.isValidFor(m_data)) {
+      throw new IllegalArgumentException("Index was built for other data");
+    }
+    m_index = index;
+  }
+
+  /**
+   * Finds the first occurrence of the pattern in the specified range of data.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is
+   *         no match. If pattern is empty, returns {@code from}
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long find(long from, long to, byte[] pattern, boolean caseSensitive)
+  {
+    if (pattern.length == 0) {
+      return from;
+    }
+    return find(from, to, new BoyerMooreMatcher(pattern, caseSensitive));
+  }
+
+  /**
+   * Finds the last occurrence of the pattern in the specified range of data.
+   * Windows of data are read from the end of the range to its start and are
+   * searched by the mirrored Boyer-Moore algorithm, so search stops at the
+   * nearest match and does not scan the beginning of the range.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data. Match must end before that offset
+   * @param pattern The pattern to search. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   *
+   * @return Offset of the first byte of the last match, or -1, if there is
+   *         no match. If pattern is empty, returns {@code to}
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long findLast(long from, long to, byte[] pattern, boolean caseSensitive)
+  {
+    if (pattern.length == 0) {
+      return to;
+    }
+    return findLast(from, to, new BoyerMooreMatcher(pattern, caseSensitive));
+  }
+
+  /**
+   * Finds all occurrences of the pattern in the specified range of data and
+   * passes their offsets to the consumer in increasing order as soon as they
+   * are found. Overlapping occurrences are reported too. Tables of the
+   * search algorithm are built once for the whole search.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search, must not be empty. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   * @param consumer Receiver of offsets of the first bytes of matches
+   *
+   * @return Count of found occurrences
+   *
+   * @throws NullPointerException If {@code pattern} or {@code consumer} is {@code null}
+   * @throws IllegalArgumentException If {@code pattern} is empty
+   */
+  public long findAll(long from, long to, byte[] pattern, boolean caseSensitive, LongConsumer consumer)
+  {
+    if (consumer == null) {
+      throw new NullPointerException("Consumer of search results can't be null");
+    }
+    return findAll(from, to, new BoyerMooreMatcher(pattern, caseSensitive), consumer);
+  }
+
+  /**
+   * Finds all occurrences of the pattern in the specified range of data.
+   * Overlapping occurrences are reported too.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search, must not be empty. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   *
+   * @return Offsets of the first bytes of matches in increasing order
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   * @throws IllegalArgumentException If {@code pattern} is empty
+   */
+  public long[] findAll(long from, long to, byte[] pattern, boolean caseSensitive)
+  {
+    return findAll(from, to, new BoyerMooreMatcher(pattern, caseSensitive));
+  }
+
+  /**
+   * Finds the first occurrence of the pattern in the specified range of data,
+   * scanning segments of the range in parallel in the {@link ForkJoinPool#commonPool()
+   * common pool}. Provider must support reading from several threads simultaneously.
+   * Throughput scales with count of cores, when provider does not serialize
+   * reads, for example, for {@link MappedFileDataProvider}.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is
+   *         no match. If pattern is empty, returns {@code from}
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long findParallel(long from, long to, byte[] pattern, boolean caseSensitive)
+  {
+    return findParallel(from, to, pattern, caseSensitive, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Finds the first occurrence of the pattern in the specified range of data,
+   * scanning segments of the range in parallel in the specified pool. Provider
+   * must support reading from several threads simultaneously.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   * @param pool Pool, in which segments are scanned
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is
+   *         no match. If pattern is empty, returns {@code from}
+   *
+   * @throws NullPointerException If {@code pattern} or {@code pool} is {@code null}
+   */
+  public long findParallel(long from, long to, byte[] pattern, boolean caseSensitive, ForkJoinPool pool)
+  {
+    if (pool == null) {
+      throw new NullPointerException("Pool for search can't be null");
+    }
+    if (pattern.length == 0) {
+      return from;
+    }
+    return findParallel(from, to, new BoyerMooreMatcher(pattern, caseSensitive), pool);
+  }
+
+  /**
+   * Finds all occurrences of all patterns of the set in the specified range of
+   * data in one pass and passes them to the listener as soon as they are found.
+   * Occurrences are reported in increasing order of their end offsets,
+   * overlapping occurrences are reported too. Windows of data do not overlap,
+   * because state of the automaton is kept between windows.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param patterns Compiled set of patterns
+   * @param listener Receiver of found occurrences
+   *
+   * @return Count of found occurrences
+   *
+   * @throws NullPointerException If {@code patterns} or {@code listener} is {@code null}
+   */
+  public long findAll(long from, long to, PatternSet patterns, final IPatternMatchListener listener)
+  {
+    if (listener == null) {
+      throw new NullPointerException("Listener of search results can't be null");
+    }
+    final long[] found = new long[1];
+    final IPatternMatchListener counter = new IPatternMatchListener()
+    {
+      @Override
+      public void patternFound(int patternId, long offset)
+      {
+        ++found[0];
+        listener.patternFound(patternId, offset);
+      }
+    };
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    final long[] ranges = mappedRanges(from, to, 1);
+    startProgress(total(ranges));
+    final byte[] window = m_window;
+    for (int i = 0; i < ranges.length; i += 2) {
+      // Occurrences do not span gaps, so automaton starts anew in each region
+      int state = 0;
+      for (long pos = ranges[i]; pos < ranges[i + 1];) {
+        final int count = m_data.getData(pos, window, 0, (int)Math.min(window.length, ranges[i + 1] - pos));
+        if (count <= 0) {
+          break;
+        }
+        state = patterns.scan(window, 0, count, state, pos, counter);
+        pos += count;
+        advance(count);
+      }
+    }
+    return found[0];
+  }
+
+  /**
+   * Finds all occurrences of all encodings of the number in the specified range
+   * of data in one pass and passes them to the listener as soon as they are found.
+   * Order of reported occurrences is not specified.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param value Number with its encodings
+   * @param aligned If {@code true}, only encodings at offsets, that are multiples
+   *        of size of their type, are found. Such search compares whole values
+   *        at aligned offsets instead of running automaton over each byte,
+   *        and is about twice as fast
+   * @param listener Receiver of found occurrences
+   *
+   * @return Count of found occurrences
+   *
+   * @throws NullPointerException If {@code value} or {@code listener} is {@code null}
+   */
+  public long findValues(long from, long to, final ValuePattern value, boolean aligned, final IValueMatchListener listener)
+  {
+    if (listener == null) {
+      throw new NullPointerException("Listener of search results can't be null");
+    }
+    if (!aligned) {
+      return findAll(from, to, value.getPatterns(), new IPatternMatchListener()
+      {
+        @Override
+        public void patternFound(int patternId, long offset)
+        {
+          listener.valueFound(offset, value.getType(patternId), value.getOrder(patternId));
+        }
+      });
+    }
+    if (m_window.length < 2 * ValuePattern.MAX_SIZE) {
+      m_window = new byte[2 * ValuePattern.MAX_SIZE];
+    }
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    final long[] ranges = mappedRanges(from, to, 1);
+    startProgress(total(ranges));
+    long found = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      found += scanValues(ranges[i], ranges[i + 1], value, listener);
+    }
+    return found;
+  }
+
+  /**
+   * Scans the range of data for encodings of the number at aligned offsets.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive, not greater
+   *        than length of data
+   * @param value Number with its encodings
+   * @param listener Receiver of found occurrences
+   *
+   * @return Count of found occurrences
+   */
+  private long scanValues(long from, long to, ValuePattern value, IValueMatchListener listener)
+  {
+    final byte[] window = m_window;
+    final ByteBuffer buffer = ByteBuffer.wrap(window);
+    final int overlap = ValuePattern.MAX_SIZE - 1;
+
+    long found = 0;
+    // Windows start at offsets, aligned for all types, so alignment of offset
+    // in data is the same as alignment of index in window
+    for (long pos = from & -ValuePattern.MAX_SIZE; pos < to;) {
+      final int length = (int)Math.min(window.length, to - pos);
+      final int count = m_data.getData(pos, window, 0, length);
+      if (count <= 0) {
+        break;
+      }
+      final int first = (int)Math.max(0, from - pos);
+      if (count < length || pos + count >= to) {
+        found += value.scanAligned(buffer, first, count, count, pos, listener);
+        advance(count - first);
+        break;
+      }
+      // Values, that start in the overlap, are checked in the next window
+      final int next = (count - overlap) & -ValuePattern.MAX_SIZE;
+      found += value.scanAligned(buffer, first, next, count, pos, listener);
+      pos += next;
+      advance(next - first);
+    }
+    return found;
+  }
+
+  /**
+   * Finds the first occurrence of the pattern with masks in the specified range
+   * of data. Search skips data by the longest run of fully defined bytes of the
+   * pattern, so patterns with long fixed parts are found faster.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long find(long from, long to, BytePattern pattern)
+  {
+    return find(from, to, new MaskedMatcher(pattern));
+  }
+
+  /**
+   * Finds the last occurrence of the pattern with masks in the specified range
+   * of data. Windows of data are read from the end of the range to its start.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data. Match must end before that offset
+   * @param pattern The pattern to search
+   *
+   * @return Offset of the first byte of the last match, or -1, if there is no match
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long findLast(long from, long to, BytePattern pattern)
+  {
+    return findLast(from, to, new MaskedMatcher(pattern));
+  }
+
+  /**
+   * Finds all occurrences of the pattern with masks in the specified range of
+   * data and passes their offsets to the consumer in increasing order as soon
+   * as they are found. Overlapping occurrences are reported too.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search
+   * @param consumer Receiver of offsets of the first bytes of matches
+   *
+   * @return Count of found occurrences
+   *
+   * @throws NullPointerException If {@code pattern} or {@code consumer} is {@code null}
+   */
+  public long findAll(long from, long to, BytePattern pattern, LongConsumer consumer)
+  {
+    if (consumer == null) {
+      throw new NullPointerException("Consumer of search results can't be null");
+    }
+    return findAll(from, to, new MaskedMatcher(pattern), consumer);
+  }
+
+  /**
+   * Finds all occurrences of the pattern with masks in the specified range of data.
+   * Overlapping occurrences are reported too.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search
+   *
+   * @return Offsets of the first bytes of matches in increasing order
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long[] findAll(long from, long to, BytePattern pattern)
+  {
+    return findAll(from, to, new MaskedMatcher(pattern));
+  }
+
+  /**
+   * Finds the first occurrence of the pattern with masks in the specified range
+   * of data, scanning segments of the range in parallel in the {@link ForkJoinPool#commonPool()
+   * common pool}. Provider must support reading from several threads simultaneously.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   *
+   * @throws NullPointerException If {@code pattern} is {@code null}
+   */
+  public long findParallel(long from, long to, BytePattern pattern)
+  {
+    return findParallel(from, to, pattern, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Finds the first occurrence of the pattern with masks in the specified range
+   * of data, scanning segments of the range in parallel in the specified pool.
+   * Provider must support reading from several threads simultaneously.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param pattern The pattern to search
+   * @param pool Pool, in which segments are scanned
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   *
+   * @throws NullPointerException If {@code pattern} or {@code pool} is {@code null}
+   */
+  public long findParallel(long from, long to, BytePattern pattern, ForkJoinPool pool)
+  {
+    if (pool == null) {
+      throw new NullPointerException("Pool for search can't be null");
+    }
+    return findParallel(from, to, new MaskedMatcher(pattern), pool);
+  }
+
+  /**
+   * Finds the first match of the matcher in the specified range of data.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param matcher Search algorithm
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   */
+  long find(long from, long to, Matcher matcher)
+  {
+    if (m_window.length < matcher.length()) {
+      m_window = new byte[matcher.length()];
+    }
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    final long[] ranges = searchRanges(from, to, matcher);
+    for (int i = 0; i < ranges.length; i += 2) {
+      final long result = scan(m_window, ranges[i], ranges[i + 1], matcher, null);
+      if (result >= 0) {
+        return result;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the last match of the matcher in the specified range of data.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param matcher Search algorithm
+   *
+   * @return Offset of the first byte of the last match, or -1, if there is no match
+   */
+  long findLast(long from, long to, Matcher matcher)
+  {
+    if (m_window.length < matcher.length()) {
+      m_window = new byte[matcher.length()];
+    }
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    final long[] ranges = searchRanges(from, to, matcher);
+    for (int i = ranges.length - 2; i >= 0; i -= 2) {
+      final long result = scanLast(m_window, ranges[i], ranges[i + 1], matcher);
+      if (result >= 0) {
+        return result;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds all matches of the matcher in the specified range of data.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param matcher Search algorithm
+   *
+   * @return Offsets of the first bytes of matches in increasing order
+   */
+  long[] findAll(long from, long to, Matcher matcher)
+  {
+    final OffsetList result = new OffsetList();
+    findAll(from, to, matcher, result);
+    return result.toArray();
+  }
+
+  /**
+   * Finds all matches of the matcher in the specified range of data.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param matcher Search algorithm
+   * @param consumer Receiver of offsets of the first bytes of matches
+   *
+   * @return Count of found matches
+   */
+  long findAll(long from, long to, Matcher matcher, LongConsumer consumer)
+  {
+    if (m_window.length < matcher.length()) {
+      m_window = new byte[matcher.length()];
+    }
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    final long[] ranges = searchRanges(from, to, matcher);
+    long found = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      found += scanAll(m_window, ranges[i], ranges[i + 1], matcher, consumer);
+    }
+    return found;
+  }
+
+  /**
+   * Finds the first match of the matcher in the specified range of data,
+   * scanning segments of the range in parallel.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive. Range is
+   *        limited by the length of data
+   * @param matcher Search algorithm
+   * @param pool Pool, in which segments are scanned
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   */
+  long findParallel(long from, long to, Matcher matcher, ForkJoinPool pool)
+  {
+    if (from < 0) {
+      from = 0;
+    }
+    to = Math.min(to, m_data.getDataLengthLong());
+    if (isIndexed(matcher)) {
+      // Candidates are few, scanning them in parallel does not pay off
+      return find(from, to, matcher);
+    }
+    final long[] ranges = mappedRanges(from, to, matcher.length());
+    final long total = total(ranges);
+    final long segmentSize = Math.min(MAX_SEGMENT_SIZE, Math.max(m_window.length,
+      total / ((long)pool.getParallelism() * SEGMENTS_PER_THREAD)));
+    if (total <= segmentSize) {
+      return find(from, to, matcher);
+    }
+    startProgress(total);
+    // Regions are scanned one after another, so match in earlier region
+    // stops search before later regions are read
+    for (int i = 0; i < ranges.length; i += 2) {
+      final AtomicLong found = new AtomicLong(Long.MAX_VALUE);
+      pool.invoke(new SegmentTask(ranges[i], ranges[i + 1], ranges[i + 1], segmentSize, matcher, found));
+      if (found.get() != Long.MAX_VALUE) {
+        return found.get();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Scans the range of data for the first match.
+   *
+   * @param window Buffer for data, must be not shorter than the pattern
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive, not greater
+   *        than length of data
+   * @param matcher Search algorithm
+   * @param found Offset of the match, found by other tasks, or {@code null}.
+   *        Scanning stops, when it reaches that offset
+   *
+   * @return Offset of the first byte of the first match, or -1, if there is no match
+   */
+  private long scan(byte[] window, long from, long to, Matcher matcher, AtomicLong found)
+  {
+    final int length = matcher.length();
+    final int overlap = length - 1;
+    for (long pos = from; to - pos >= length;) {
+      if (found != null && pos >= found.get()) {
+        // Earlier match already exists
+        return -1;
+      }
+      final int count = m_data.getData(pos, window, 0, (int)Math.min(window.length, to - pos));
+      if (count < length) {
+        return -1;
+      }
+      final int index = matcher.find(window, 0, count);
+      if (index >= 0) {
+        return pos + index;
+      }
+      // Keep tail of the window, where a match could start
+      pos += count - overlap;
+      advance(count - overlap);
+    }
+    return -1;
+  }
+
+  /**
+   * Scans the range of data for the last match, reading windows from the end
+   * of the range.
+   *
+   * @param window Buffer for data, must be not shorter than the pattern
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive, not greater
+   *        than length of data
+   * @param matcher Search algorithm
+   *
+   * @return Offset of the first byte of the last match, or -1, if there is no match
+   */
+  private long scanLast(byte[] window, long from, long to, Matcher matcher)
+  {
+    final int length = matcher.length();
+    final int overlap = length - 1;
+    for (long end = to; end - from >= length;) {
+      final long start = Math.max(from, end - window.length);
+      final int count = m_data.getData(start, window, 0, (int)(end - start));
+      if (count < length) {
+        return -1;
+      }
+      final int index = matcher.findLast(window, 0, count);
+      if (index >= 0) {
+        return start + index;
+      }
+      // Keep head of the window, where a match could end
+      end = start + overlap;
+      advance(count - overlap);
+    }
+    return -1;
+  }
+
+  /**
+   * Scans the range of data for all matches.
+   *
+   * @param window Buffer for data, must be not shorter than the pattern
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive, not greater
+   *        than length of data
+   * @param matcher Search algorithm
+   * @param consumer Receiver of offsets of the first bytes of matches
+   *
+   * @return Count of found matches
+   */
+  private long scanAll(byte[] window, long from, long to, Matcher matcher, LongConsumer consumer)
+  {
+    final int length = matcher.length();
+    final int overlap = length - 1;
+    long found = 0;
+    for (long pos = from; to - pos >= length;) {
+      final int count = m_data.getData(pos, window, 0, (int)Math.min(window.length, to - pos));
+      if (count < length) {
+        break;
+      }
+      // Matches, that start in the overlap, are found in the next window
+      for (int index = matcher.find(window, 0, count); index >= 0; index = matcher.find(window, index + 1, count)) {
+        consumer.accept(pos + index);
+        ++found;
+      }
+      pos += count - overlap;
+      advance(count - overlap);
+    }
+    return found;
+  }
+
+  /**
+   * Finds ranges of data, where matches can be, and starts progress of their
+   * scanning. Ranges are mapped regions of data, limited by candidate blocks
+   * of the {@link #m_index index}, if it can be used.
+   *
+   * @param from Offset of the first byte of the searched range, inclusive
+   * @param to Offset of the last byte of the searched range, exclusive, not
+   *        greater than length of data
+   * @param matcher Search algorithm
+   *
+   * @return Pairs of start and end offsets of ranges in increasing order
+   */
+  private long[] searchRanges(long from, long to, Matcher matcher)
+  {
+    long[] ranges = mappedRanges(from, to, matcher.length());
+    if (isIndexed(matcher)) {
+      ranges = intersect(ranges, candidateRanges(from, to, matcher), matcher.length());
+    }
+    startProgress(total(ranges));
+    return ranges;
+  }
+
+  /**
+   * Finds ranges of data, where matches can be, by the {@link #m_index index}.
+   *
+   * @param from Offset of the first byte of the searched range, inclusive
+   * @param to Offset of the last byte of the searched range, exclusive, not
+   *        greater than length of data
+   * @param matcher Search algorithm, which {@link #isIndexed can use} the index
+   *
+   * @return Pairs of start and end offsets of ranges in increasing order
+   */
+  private long[] candidateRanges(long from, long to, Matcher matcher)
+  {
+    final NgramIndex index = m_index;
+    final BitSet blocks = index.candidates(matcher.literal());
+    final long blockSize = index.getBlockSize();
+    final int offset = matcher.literalOffset();
+    // Literal, that starts in block b, is a part of match, that starts in
+    // [b * blockSize - offset; (b + 1) * blockSize - offset)
+    final OffsetList ranges = new OffsetList();
+    for (int b = blocks.nextSetBit((int)((from + offset) / blockSize)); b >= 0;) {
+      final int end = blocks.nextClearBit(b);
+      final long start = b * blockSize - offset;
+      if (start >= to) {
+        break;
+      }
+      final long lo = Math.max(from, start);
+      final long hi = Math.min(to, end * blockSize - offset + matcher.length() - 1);
+      if (hi - lo >= matcher.length()) {
+        ranges.accept(lo);
+        ranges.accept(hi);
+      }
+      b = blocks.nextSetBit(end);
+    }
+    return ranges.toArray();
+  }
+
+  /**
+   * Finds mapped regions of data in the specified range. Data of providers,
+   * that are not {@link ISparseDataProvider sparse}, is mapped entirely.
+   * Adjacent regions are merged, so matches can span their boundaries.
+   *
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive, not greater
+   *        than length of data
+   * @param minLength Minimal length of returned ranges, shorter regions are skipped
+   *
+   * @return Pairs of start and end offsets of ranges in increasing order
+   */
+  private long[] mappedRanges(long from, long to, int minLength)
+  {
+    if (!(m_data instanceof ISparseDataProvider)) {
+      return to - from >= minLength ? new long[] { from, to } : new long[0];
+    }
+    final ISparseDataProvider data = (ISparseDataProvider)m_data;
+    final OffsetList ranges = new OffsetList();
+    long start = -1;
+    long end = -1;
+    for (long pos = from; pos >= 0 && pos < to;) {
+      if (!data.isMapped(pos)) {
+        pos = data.nextRegion(pos);
+        continue;
+      }
+      if (pos != end) {
+        if (end - start >= minLength) {
+          ranges.accept(start);
+          ranges.accept(end);
+        }
+        start = pos;
+      }
+      end = Math.min(data.getRegionEnd(pos), to);
+      pos = end;
+    }
+    if (end - start >= minLength) {
+      ranges.accept(start);
+      ranges.accept(end);
+    }
+    return ranges.toArray();
+  }
+
+  /**
+   * Intersects two sets of ranges.
+   *
+   * @param a Pairs of start and end offsets of ranges in increasing order
+   * @param b Pairs of start and end offsets of ranges in increasing order
+   * @param minLength Minimal length of returned ranges, shorter intersections are skipped
+   *
+   * @return Pairs of start and end offsets of intersections in increasing order
+   */
+  private static long[] intersect(long[] a, long[] b, int minLength)
+  {
+    final OffsetList ranges = new OffsetList();
+    for (int i = 0, j = 0; i < a.length && j < b.length;) {
+      final long start = Math.max(a[i], b[j]);
+      final long end = Math.min(a[i + 1], b[j + 1]);
+      if (end - start >= minLength) {
+        ranges.accept(start);
+        ranges.accept(end);
+      }
+      // Move past the range, that ends first
+      if (a[i + 1] < b[j + 1]) {
+        i += 2;
+      } else {
+        j += 2;
+      }
+    }
+    return ranges.toArray();
+  }
+
+  /**
+   * Calculates total length of ranges.
+   *
+   * @param ranges Pairs of start and end offsets of ranges
+   *
+   * @return Sum of lengths of ranges
+   */
+  private static long total(long[] ranges)
+  {
+    long total = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      total += ranges[i + 1] - ranges[i];
+    }
+    return total;
+  }
+
+  /**
+   * Checks, whether {@link #m_index index} can find candidates for matches of the matcher.
+   */
+  private boolean isIndexed(Matcher matcher)
+  {
+    final byte[] literal = matcher.literal();
+    return m_index != null && literal != null && literal.length >= NgramIndex.GRAM_LENGTH
+        && m_index.getDataLength() == m_data.getDataLengthLong();
+  }
+
+  private void startProgress(long total)
+  {
+    m_processed.set(0);
+    m_total = Math.max(total, 0);
+    advance(0);
+  }
+
+  private void advance(long count)
+  {
+    final IProgressListener listener = m_listener;
+    if (listener != null) {
+      listener.progressChanged(m_processed.addAndGet(count), m_total);
+    }
+  }
+
+  /**
+   * Task of parallel search, that scans matches, starting in the range
+   * {@code [start; end)}. Tasks with big ranges split them in halves and
+   * scan the first half first, so earlier segments are scanned earlier.
+   */
+  private final class SegmentTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    /** Offset of the first byte, at which match can start, inclusive. */
+    private final long start;
+    /** Offset of the last byte, at which match can start, exclusive. */
+    private final long end;
+    /** End of the whole searched range, exclusive. */
+    private final long limit;
+    private final long segmentSize;
+    private final Matcher matcher;
+    /** The lowest offset of found matches or {@link Long#MAX_VALUE}. */
+    private final AtomicLong found;
+
+    SegmentTask(long start, long end, long limit, long segmentSize, Matcher matcher, AtomicLong found)
+    {
+      this.start = start;
+      this.end = end;
+      this.limit = limit;
+      this.segmentSize = segmentSize;
+      this.matcher = matcher;
+      this.found = found;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (start >= found.get()) {
+        // Earlier match already exists, so this segment can not contain the first match
+        return;
+      }
+      if (end - start > segmentSize) {
+        final long middle = start + (end - start) / 2;
+        invokeAll(
+          new SegmentTask(start, middle, limit, segmentSize, matcher, found),
+          new SegmentTask(middle, end, limit, segmentSize, matcher, found)
+        );
+        return;
+      }
+      // Read pattern, that starts at the last byte of segment, completely
+      final long to = Math.min(end + matcher.length() - 1, limit);
+      final byte[] window = new byte[(int)Math.max(matcher.length(), Math.min(m_window.length, to - start))];
+      final long offset = scan(window, start, to, matcher, found);
+      if (offset >= 0) {
+        found.accumulateAndGet(offset, Math::min);
+      }
+    }
+  }
+
+  /** Growable array of offsets, that collects search results. */
+  static final class OffsetList implements LongConsumer
+  {
+    private long[] offsets = new long[16];
+    private int count;
+
+    @Override
+    public void accept(long offset)
+    {
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, 2 * count);
+      }
+      offsets[count++] = offset;
+    }
+
+    long[] toArray() { return Arrays.copyOf(offsets, count); }
+  }
+}
@@ -0,0 +1,246 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import javax.swing.SwingWorker;
+
+/**
+ * Search, that runs on a worker thread. Task reports count of scanned bytes,
+ * which is available by {@link #getProcessed()} and by the bound property
+ * {@code "processed"}, and percentage of work by the standard {@code "progress"}
+ * property. Listeners of properties are notified on the EDT, as well as the
+ * {@link #done()} method, after which {@link #getResult()} returns offset of
+ * the found match.
+ * <p>
+ * If data provider supports {@link ISnapshotDataProvider snapshots}, task
+ * searches the snapshot, taken at creation of task, so data can be edited while
+ * search runs. Otherwise provider must support reading from the worker thread.
+ * <p>
+ * Cancel task by {@code cancel(false)}: scanning stops after the current window.
+ * Interruption of worker thread can close file channels of some providers,
+ * such as {@link MappedFileDataProvider}.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class SearchTask extends SwingWorker<Long, Long>
+{
+  private final SearchEngine m_engine;
+  /** Version of the searched snapshot or -1, if provider does not support snapshots. */
+  private final long m_version;
+  private final long m_from;
+  private final long m_to;
+  /** Search algorithm or {@code null}, if pattern is empty. */
+  private final Matcher m_matcher;
+  private final boolean m_parallel;
+  /** If {@code true}, task searches the last occurrence in the range. */
+  private boolean m_backward;
+
+  /** Count of scanned bytes, published on the EDT. */
+  private long m_processed;
+  /**
+   * Count of bytes, that will be scanned, as reported by the engine. Until the
+   * engine reports it, this is length of the range.
+   */
+  private volatile long m_total;
+
+  /**
+   * Creates task for search of the first occurrence of the pattern.
+   *
+   * @param data Provider with data to search
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive
+   * @param pattern The pattern to search. Array is not changed
+   * @param caseSensitive If {@code false}, ASCII letters in data and pattern
+   *        are compared case-insensitively
+   * @param parallel If {@code true}, segments of data are scanned
+   *        {@link SearchEngine#findParallel(long, long, byte[], boolean) in parallel}
+   *
+   * @throws NullPointerException If {@code data} or {@code pattern} is {@code null}
+   */
+  public SearchTask(IDataProvider data, long from, long to, byte[] pattern, boolean caseSensitive, boolean parallel)
+  {
+    this(data, from, to, pattern.length == 0 ? null : new BoyerMooreMatcher(pattern, caseSensitive), parallel);
+  }
+
+  /**
+   * Creates task for search of the first occurrence of the pattern with masks.
+   *
+   * @param data Provider with data to search
+   * @param from Offset of the first byte of the range, inclusive
+   * @param to Offset of the last byte of the range, exclusive
+   * @param pattern The pattern to search
+   * @param parallel If {@code true}, segments of data are scanned
+   *        {@link SearchEngine#findParallel(long, long, BytePattern) in parallel}
+   *
+   * @throws NullPointerException If {@code data} or {@code pattern} is {@code null}
+   */
+  public SearchTask(IDataProvider data, long from, long to, BytePattern pattern, boolean parallel)
+  {
+    this(data, from, to, new MaskedMatcher(pattern), parallel);
+  }
+
+  private SearchTask(IDataProvider data, long from, long to, Matcher matcher, boolean parallel)
+  {
+    if (data instanceof ISnapshotDataProvider) {
+      final IDataSnapshot snapshot = ((ISnapshotDataProvider)data).snapshot();
+      m_engine = new SearchEngine(snapshot);
+      m_version = snapshot.getVersion();
+    } else {
+      m_engine = new SearchEngine(data);
+      m_version = -1;
+    }
+    m_from = from;
+    m_to = Math.min(to, m_engine.getData().getDataLengthLong());
+    m_matcher = matcher;
+    m_parallel = parallel;
+    m_total = Math.max(m_to - from, 0);
+  }
+
+  /**
+   * Sets index of data, which is used to find candidates for matches. Must be
+   * called before the task is executed.
+   *
+   * @param index Index of data or {@code null}, to scan the whole range
+   *
+   * @throws IllegalArgumentException If index was built for other data
+   *
+   * @see SearchEngine#setIndex
+   */
+  public void setIndex(NgramIndex index)
+  {
+    m_engine.setIndex(index);
+  }
+
+  /**
+   * Sets direction of search. Backward search finds the last occurrence of the
+   * pattern in the range, reading data from the end of the range. Backward
+   * search is not parallel. Must be called before the task is executed.
+   *
+   * @param backward {@code true}, to find the last occurrence
+   *
+   * @see SearchEngine#findLast(long, long, byte[], boolean)
+   */
+  public void setBackward(boolean backward)
+  {
+    m_backward = backward;
+  }
+
+  /**
+   * Returns whether task finds the last occurrence of the pattern.
+   *
+   * @return {@code true}, if search is backward
+   */
+  public boolean isBackward() { return m_backward; }
+
+  /**
+   * Returns version of data, which is searched. If data was changed after
+   * creation of task, i.e. {@link ISnapshotDataProvider#getVersion() version}
+   * of the provider differs from this version, found offset can point to other
+   * bytes in the current data.
+   *
+   * @return Version of the searched snapshot, or -1, if provider does not
+   *         support snapshots and its current data is searched
+   */
+  public long getDataVersion() { return m_version; }
+
+  /**
+   * Returns offset of the first byte of the searched range.
+   *
+   * @return Offset of the range
+   */
+  public long getFrom() { return m_from; }
+
+  /**
+   * Returns length of the searched pattern.
+   *
+   * @return Length of the pattern in bytes
+   */
+  public int getPatternLength() { return m_matcher == null ? 0 : m_matcher.length(); }
+
+  /**
+   * Returns count of bytes, scanned so far. Must be called on the EDT.
+   *
+   * @return Count of scanned bytes
+   */
+  public long getProcessed() { return m_processed; }
+
+  /**
+   * Returns count of bytes, that will be scanned. When {@link #setIndex index}
+   * is used, only candidate ranges are scanned, which total length is known
+   * after the search starts.
+   *
+   * @return Count of bytes to scan, or length of the searched range, if search
+   *         is not started yet
+   */
+  public long getTotal() { return m_total; }
+
+  /**
+   * Returns offset of the found match. Must be called after the task is
+   * {@link #isDone() done}.
+   *
+   * @return Offset of the first byte of the match or -1, if there is no match,
+   *         task was cancelled or failed
+   */
+  public long getResult()
+  {
+    if (isCancelled()) {
+      return -1;
+    }
+    try {
+      return get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return -1;
+    } catch (ExecutionException ex) {
+      return -1;
+    }
+  }
+
+  @Override
+  protected Long doInBackground()
+  {
+    m_engine.setProgressListener(new IProgressListener()
+    {
+      @Override
+      public void progressChanged(long processed, long total)
+      {
+        if (isCancelled()) {
+          throw new CancellationException("Search cancelled");
+        }
+        m_total = total;
+        publish(processed);
+      }
+    });
+    final long result;
+    if (m_matcher == null) {
+      result = m_backward ? m_to : m_from;
+    } else
+    if (m_backward) {
+      result = m_engine.findLast(m_from, m_to, m_matcher);
+    } else {
+      result = m_parallel
+        ? m_engine.findParallel(m_from, m_to, m_matcher, ForkJoinPool.commonPool())
+        : m_engine.find(m_from, m_to, m_matcher);
+    }
+    publish(getTotal());
+    return result;
+  }
+
+  @Override
+  protected void process(List<Long> chunks)
+  {
+    final long old = m_processed;
+    // Values from parallel threads can come in any order
+    for (final Long processed : chunks) {
+      m_processed = Math.max(m_processed, processed);
+    }
+    final long total = getTotal();
+    setProgress(total == 0 ? 100 : (int)Math.min(100, 100 * (double)m_processed / total));
+    firePropertyChange("processed", old, m_processed);
+  }
+}
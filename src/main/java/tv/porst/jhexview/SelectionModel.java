@@ -448,6 +448,53 @@ public class SelectionModel implements Iterable<SelectionModel.Interval> {
       fireSelectionEvent();
     }
   }
+  /**
+   * Moves selected intervals after insertion or removing of data. Intervals
+   * after the {@code offset} are moved, interval that contains the {@code offset}
+   * is expanded on insertion. Removed nibbles are removed from the selection.
+   * <p>
+   * If this represents a change to the current selection, then each
+   * {@link SelectionListener} is notified of the change.
+   *
+   * @param offset Offset of nibble at which data is inserted or removed
+   * @param delta Count of inserted nibbles, if positive, or count of removed
+   *        nibbles, if negative
+   *
+   * @since 2.2
+   */
+  void shift(long offset, long delta) {
+    if (delta == 0 || selected.isEmpty()) return;
+
+    final ArrayList<Interval> old = new ArrayList<>(selected);
+    selected.clear();
+    boolean hasChanges = false;
+    Interval last = null;
+    for (final Interval range : old) {
+      long start = shift(range.start, offset, delta);
+      final long end = shift(range.end, offset, delta);
+      if (start == end) {
+        hasChanges = true;
+        continue;
+      }
+      // After removing intervals around removed region can touch each other
+      if (last != null && last.end == start) {
+        selected.remove(selected.size() - 1);
+        start = last.start;
+      }
+      last = new Interval(start, end);
+      selected.add(last);
+      hasChanges |= !last.equals(range);
+    }
+    if (hasChanges) {
+      fireSelectionEvent();
+    }
+  }
+  private static long shift(long position, long offset, long delta) {
+    if (position < offset) return position;
+    if (delta > 0) return position + delta;
+    // Positions inside removed region are moved to its start
+    return Math.max(offset, position + delta);
+  }
   //</editor-fold>
 
   /**
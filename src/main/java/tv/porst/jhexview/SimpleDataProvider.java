@@ -2,18 +2,15 @@
 
 package tv.porst.jhexview;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Data provider that provides data to the hex view component from a static
  * array. Use this data provider if you already have all the data in memory and
  * do not have to reload memory from an external source.
  */
-public final class SimpleDataProvider implements IDataProvider
+public final class SimpleDataProvider extends AbstractDataProvider
 {
-  private final List<IDataChangedListener> listeners = new ArrayList<>();
   private final byte[] m_data;
 
   public SimpleDataProvider(byte[] data)
@@ -22,24 +19,29 @@ public final class SimpleDataProvider implements IDataProvider
   }
 
   @Override
-  public void addListener(final IDataChangedListener listener)
+  public byte[] getData(long offset, int length)
   {
-    if (listener != null && !listeners.contains(listener)) {
-        listeners.add(listener);
+    if (offset + length > getDataLength()) {
+      length = getDataLength() - (int)offset;
+    }
+    if (length > 0) {
+      return Arrays.copyOfRange(this.m_data, (int) offset, (int) (offset + length));
+    } else {
+      return new byte[0];
     }
   }
 
   @Override
-  public byte[] getData(long offset, int length)
+  public int getData(long offset, byte[] buffer, int bufferOffset, int length)
   {
     if (offset + length > getDataLength()) {
       length = getDataLength() - (int)offset;
     }
     if (length > 0) {
-      return Arrays.copyOfRange(this.m_data, (int) offset, (int) (offset + length));
-    } else {
-      return new byte[0];
+      System.arraycopy(this.m_data, (int) offset, buffer, bufferOffset, length);
+      return length;
     }
+    return 0;
   }
 
   @Override
@@ -77,14 +79,6 @@ public final class SimpleDataProvider implements IDataProvider
     return false;
   }
 
-  @Override
-  public void removeListener(IDataChangedListener listener)
-  {
-    if (listener != null) {
-      listeners.remove(listener);
-    }
-  }
-
   @Override
   public void setData(long offset, byte[] data)
   {
@@ -95,17 +89,7 @@ public final class SimpleDataProvider implements IDataProvider
     }
     if (length > 0) {
       System.arraycopy(data, 0, this.m_data, (int) offset, length);
-      fireDataChangedListener();
-    }
-  }
-
-  protected void fireDataChangedListener()
-  {
-    if (!listeners.isEmpty()) {
-      DataChangedEvent event = new DataChangedEvent(this);
-      for (final IDataChangedListener l: listeners) {
-        l.dataChanged(event);
-      }
+      fireDataChangedListener(offset, length);
     }
   }
 }
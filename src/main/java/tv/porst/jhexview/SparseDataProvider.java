@@ -0,0 +1,379 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data provider for sparse address spaces, such as memory of a process or
+ * memory map of a microcontroller. Provider has a fixed length, that can be
+ * as big as whole 64-bit space, and contains a set of non-overlapping mapped
+ * regions, each of which is backed by its own data provider. Regions are kept
+ * in a sorted map, so lookup of any offset takes {@code O(log n)} time, where
+ * {@code n} is count of regions.
+ * <p>
+ * Gaps between regions are never read from any backing store: they are reported
+ * as available, read as zeroes and drawn by {@link JHexView} as {@code ??}.
+ * Gaps and regions with read-only providers are not {@link #isEditable(long, int)
+ * editable}, writes into them are rejected.
+ * <p>
+ * Provider is thread-safe, if providers of regions are thread-safe.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class SparseDataProvider extends AbstractDataProvider implements ISparseDataProvider
+{
+  /** Size of the address space. */
+  private final long m_length;
+  /** Mapped regions, keyed by their start offsets. */
+  private final TreeMap<Long, Region> m_regions = new TreeMap<>();
+
+  /** Listener that forwards notifications of providers of regions. */
+  private final InternalListener m_listener = new InternalListener();
+
+  /** Mapped region of address space. */
+  private static final class Region
+  {
+    /** Offset of the first byte of region. */
+    final long start;
+    /** Offset right after the last byte of region. */
+    final long end;
+    /** Provider with data of region. Offset 0 in that provider corresponds to {@link #start}. */
+    final IDataProvider data;
+
+    Region(long start, IDataProvider data)
+    {
+      this.start = start;
+      this.end = start + data.getDataLengthLong();
+      this.data = data;
+    }
+  }
+
+  /**
+   * Creates provider with empty address space of the specified size.
+   *
+   * @param length Size of address space in bytes, must not be negative
+   *
+   * @throws IllegalArgumentException If {@code length} is negative
+   */
+  public SparseDataProvider(long length)
+  {
+    if (length < 0) {
+      throw new IllegalArgumentException("Size of address space must not be negative: " + length);
+    }
+    m_length = length;
+  }
+
+  /**
+   * Maps region, backed by the specified array.
+   *
+   * @param start Offset of the first byte of region
+   * @param data Data of region
+   *
+   * @throws IllegalArgumentException If region is empty, lays outside of address
+   *         space or overlaps with already mapped region
+   */
+  public void addRegion(long start, byte[] data)
+  {
+    addRegion(start, new SimpleDataProvider(data));
+  }
+
+  /**
+   * Maps region, backed by the specified provider. Length of the region is
+   * equal to length of the provider and must not change.
+   *
+   * @param start Offset of the first byte of region
+   * @param data Provider with data of region
+   *
+   * @throws NullPointerException If {@code data} is {@code null}
+   * @throws IllegalArgumentException If region is empty, lays outside of address
+   *         space or overlaps with already mapped region
+   */
+  public void addRegion(long start, IDataProvider data)
+  {
+    if (data == null) {
+      throw new NullPointerException("Data provider of region can't be null");
+    }
+    final Region region = new Region(start, data);
+    if (start < 0 || region.end <= start || region.end > m_length) {
+      throw new IllegalArgumentException("Region [0x" + Long.toHexString(start)
+        + "; 0x" + Long.toHexString(region.end) + ") is empty or outside of address space");
+    }
+    synchronized (this) {
+      final Map.Entry<Long, Region> before = m_regions.floorEntry(start);
+      final Map.Entry<Long, Region> after = m_regions.ceilingEntry(start);
+      if (before != null && before.getValue().end > start
+       || after != null && after.getKey() < region.end
+      ) {
+        throw new IllegalArgumentException("Region [0x" + Long.toHexString(start)
+          + "; 0x" + Long.toHexString(region.end) + ") overlaps with already mapped region");
+      }
+      m_regions.put(start, region);
+    }
+    data.addListener(m_listener);
+    fireDataChangedListener(region.start, region.end - region.start);
+  }
+
+  /**
+   * Unmaps region that starts at the specified offset.
+   *
+   * @param start Offset of the first byte of region
+   *
+   * @return {@code true} if region was unmapped, {@code false} if there is
+   *         no region, that starts at that offset
+   */
+  public boolean removeRegion(long start)
+  {
+    final Region region;
+    synchronized (this) {
+      region = m_regions.remove(start);
+    }
+    if (region == null) {
+      return false;
+    }
+    region.data.removeListener(m_listener);
+    fireDataChangedListener(region.start, region.end - region.start);
+    return true;
+  }
+
+  /**
+   * Returns count of mapped regions.
+   *
+   * @return Count of regions
+   */
+  public synchronized int getRegionCount() { return m_regions.size(); }
+
+  @Override
+  public synchronized boolean isMapped(long offset)
+  {
+    return findRegion(offset) != null;
+  }
+
+  @Override
+  public synchronized long getRegionEnd(long offset)
+  {
+    final Region region = findRegion(offset);
+    return region != null ? region.end : -1;
+  }
+
+  @Override
+  public synchronized long nextRegion(long offset)
+  {
+    final Long next = m_regions.higherKey(offset);
+    return next != null ? next : -1;
+  }
+
+  @Override
+  public synchronized long previousRegion(long offset)
+  {
+    final Long previous = m_regions.lowerKey(offset);
+    return previous != null ? previous : -1;
+  }
+
+  @Override
+  public byte[] getData(long offset, int length)
+  {
+    if (offset + length > m_length) {
+      length = (int)(m_length - offset);
+    }
+    if (length <= 0) {
+      return new byte[0];
+    }
+    final byte[] result = new byte[length];
+    getData(offset, result, 0, length);
+    return result;
+  }
+
+  @Override
+  public synchronized int getData(long offset, byte[] buffer, int bufferOffset, int length)
+  {
+    if (offset + length > m_length) {
+      length = (int)(m_length - offset);
+    }
+    int pos = 0;
+    while (pos < length) {
+      final long current = offset + pos;
+      final Region region = findRegion(current);
+      final int count;
+      if (region != null) {
+        count = (int)Math.min(length - pos, region.end - current);
+        region.data.getData(current - region.start, buffer, bufferOffset + pos, count);
+      } else {
+        final Long next = m_regions.higherKey(current);
+        count = (int)Math.min(length - pos, next != null ? next - current : Long.MAX_VALUE);
+        Arrays.fill(buffer, bufferOffset + pos, bufferOffset + pos + count, (byte)0);
+      }
+      pos += count;
+    }
+    return Math.max(length, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return Size of address space or {@link Integer#MAX_VALUE}, if it is bigger
+   */
+  @Override
+  public int getDataLength()
+  {
+    return (int)Math.min(m_length, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public long getDataLengthLong()
+  {
+    return m_length;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Gaps between regions are always available, availability of mapped data
+   * is determined by providers of regions.
+   */
+  @Override
+  public synchronized boolean hasData(long offset, int length)
+  {
+    if (offset < 0 || offset + length > m_length) {
+      return false;
+    }
+    final Map.Entry<Long, Region> first = m_regions.floorEntry(offset);
+    final long from = first != null ? first.getKey() : offset;
+    for (final Region region : m_regions.subMap(from, true, offset + length, false).values()) {
+      final long start = Math.max(offset, region.start);
+      final long end   = Math.min(offset + length, region.end);
+      if (start < end && !region.data.hasData(start - region.start, (int)(end - start))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@code true}, if at least one region has editable provider. Use
+   *         {@link #isEditable(long, int)} to check, whether the specific bytes
+   *         can be changed
+   */
+  @Override
+  public synchronized boolean isEditable()
+  {
+    for (final Region region : m_regions.values()) {
+      if (region.data.isEditable()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Segment is editable, if it has no gaps and all regions, that it overlaps,
+   * have editable providers.
+   */
+  @Override
+  public synchronized boolean isEditable(long offset, int length)
+  {
+    if (offset < 0 || offset + length > m_length) {
+      return false;
+    }
+    final long end = offset + length;
+    for (long current = offset; current < end;) {
+      final Region region = findRegion(current);
+      if (region == null || !region.data.isEditable(current - region.start, (int)(Math.min(end, region.end) - current))) {
+        return false;
+      }
+      current = region.end;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean keepTrying()
+  {
+    return false;
+  }
+
+  /**
+   * Writes the specified data into mapped regions with editable providers.
+   *
+   * @param offset The start offset for the data to be written.
+   * @param data The data to write.
+   *
+   * @throws IllegalArgumentException If the data overlaps with a gap or with
+   *         a read-only region, see {@link #isEditable(long, int)}. In that
+   *         case nothing is written
+   */
+  @Override
+  public void setData(long offset, byte[] data)
+  {
+    final Region[] regions;
+    synchronized (this) {
+      if (!isEditable(offset, data.length)) {
+        throw new IllegalArgumentException("Range [0x" + Long.toHexString(offset)
+          + "; 0x" + Long.toHexString(offset + data.length) + ") is not mapped or is read-only");
+      }
+      final Map.Entry<Long, Region> first = m_regions.floorEntry(offset);
+      final long from = first != null ? first.getKey() : offset;
+      regions = m_regions.subMap(from, true, offset + data.length, false).values().toArray(new Region[0]);
+    }
+    for (final Region region : regions) {
+      final long start = Math.max(offset, region.start);
+      final long end   = Math.min(offset + data.length, region.end);
+      if (start < end) {
+        region.data.setData(start - region.start,
+          Arrays.copyOfRange(data, (int)(start - offset), (int)(end - offset)));
+      }
+    }
+  }
+
+  /**
+   * Returns the region, that contains the specified offset.
+   *
+   * @param offset Offset of byte
+   *
+   * @return The region or {@code null}, if the offset is not mapped
+   */
+  private Region findRegion(long offset)
+  {
+    final Map.Entry<Long, Region> entry = m_regions.floorEntry(offset);
+    if (entry != null && offset < entry.getValue().end) {
+      return entry.getValue();
+    }
+    return null;
+  }
+
+  /**
+   * Listener is moved into an internal class to avoid publishing the
+   * listener methods in the public interface of the provider.
+   */
+  private class InternalListener implements IDataChangedListener
+  {
+    @Override
+    public void dataChanged(DataChangedEvent event)
+    {
+      Region changed = null;
+      synchronized (SparseDataProvider.this) {
+        for (final Region region : m_regions.values()) {
+          if (region.data == event.getSource()) {
+            changed = region;
+            break;
+          }
+        }
+      }
+      if (changed == null) {
+        fireDataChangedListener();
+        return;
+      }
+      // Translate range into address space, limiting it by the region
+      final long size = changed.end - changed.start;
+      final long offset = Math.min(event.getOffset(), size);
+      fireDataChangedListener(changed.start + offset, Math.min(event.getLength(), size - offset));
+    }
+  }
+}
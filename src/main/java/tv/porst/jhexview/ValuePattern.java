@@ -0,0 +1,342 @@
+// See LICENSE.md for license information
+
+package tv.porst.jhexview;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Number, that is searched in all its binary encodings of the requested types
+ * and byte orders at once, for example, 32-bit and 64-bit integers in both byte
+ * orders. Encodings are compiled into a {@link PatternSet}, so all of them are
+ * found in one pass over data, see {@link SearchEngine#findValues}.
+ * <p>
+ * Integer types are used only for integral numbers, that fit into the type
+ * as signed or unsigned number, so {@code 200} is searched as 8-bit value
+ * {@code C8}, but {@code 300} is not searched as 8-bit value at all.
+ * {@link Type#FLOAT} encodes number, rounded to the nearest {@code float}.
+ * Encodings of 8-bit type do not depend on byte order, so they are reported
+ * with the first of requested orders.
+ * <p>
+ * Patterns are immutable.
+ *
+ * @author Mingun
+ * @since 2.2
+ */
+public final class ValuePattern
+{
+  /** Binary types, in which number can be encoded. */
+  public enum Type {
+    /** 8-bit integer, signed or unsigned. */
+    INT8(1),
+    /** 16-bit integer, signed or unsigned. */
+    INT16(2),
+    /** 32-bit integer, signed or unsigned. */
+    INT32(4),
+    /** 64-bit integer, signed or unsigned, for example, pointer. */
+    INT64(8),
+    /** IEEE 754 single precision number. */
+    FLOAT(4),
+    /** IEEE 754 double precision number. */
+    DOUBLE(8);
+
+    private final int size;
+
+    private Type(int size) { this.size = size; }
+
+    /**
+     * Returns size of encoded number.
+     *
+     * @return Size in bytes, power of 2
+     */
+    public int getSize() { return size; }
+  }
+
+  /** Maximum size of encoded number, all offsets, aligned to it, are aligned for all types. */
+  static final int MAX_SIZE = 8;
+
+  private final Number m_value;
+  /** Types of encodings, indexed by pattern index in {@link #m_patterns}. */
+  private final Type[] m_types;
+  /** Byte orders of encodings, indexed by pattern index in {@link #m_patterns}. */
+  private final ByteOrder[] m_orders;
+  /** Encodings, compiled for search at any offset. */
+  private final PatternSet m_patterns;
+  /**
+   * Encodings, read as big-endian numbers, for search at aligned offsets.
+   * Index in array is logarithm of size of encoding.
+   */
+  private final long[][] m_words = new long[4][];
+  /** Indexes of encodings in {@link #m_words}. */
+  private final int[][] m_ids = new int[4][];
+  /**
+   * Bit sets of low 16 bits of {@link #m_words}, that reject most offsets by
+   * one test without comparing with each encoding.
+   */
+  private final long[][] m_filters = new long[4][1024];
+
+  /**
+   * Creates pattern for all encodings of number.
+   *
+   * @param value Number to search. Integral values of any {@link Number}
+   *        subclass are searched as integers, as well as floating-point numbers
+   * @param types Types of encodings, must not be empty
+   * @param orders Byte orders of encodings, must not be empty
+   *
+   * @throws NullPointerException If any of arguments is {@code null}
+   * @throws IllegalArgumentException If {@code types} or {@code orders} is empty,
+   *         or number can not be encoded by any of types
+   */
+  public ValuePattern(Number value, Set<Type> types, ByteOrder... orders)
+  {
+    if (value == null) {
+      throw new NullPointerException("Value for search must not be null");
+    }
+    if (types.isEmpty()) {
+      throw new IllegalArgumentException("Set of types must not be empty");
+    }
+    if (orders.length == 0) {
+      throw new IllegalArgumentException("Set of byte orders must not be empty");
+    }
+    final Long integral = toIntegral(value);
+    final List<Type> encodingTypes = new ArrayList<>();
+    final List<ByteOrder> encodingOrders = new ArrayList<>();
+    final List<byte[]> encodings = new ArrayList<>();
+    for (final Type type : Type.values()) {
+      if (!types.contains(type)) {
+        continue;
+      }
+      if ((type != Type.FLOAT && type != Type.DOUBLE) && (integral == null || !fits(integral, type.size))) {
+        continue;
+      }
+      for (final ByteOrder order : orders) {
+        if (order == null) {
+          throw new NullPointerException("Byte order must not be null");
+        }
+        if (type.size == 1 && order != orders[0]) {
+          continue;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(type.size).order(order);
+        switch (type) {
+          case INT8:   buffer.put(integral.byteValue()); break;
+          case INT16:  buffer.putShort(integral.shortValue()); break;
+          case INT32:  buffer.putInt(integral.intValue()); break;
+          case INT64:  buffer.putLong(integral); break;
+          case FLOAT:  buffer.putFloat(value.floatValue()); break;
+          case DOUBLE: buffer.putDouble(value.doubleValue()); break;
+        }
+        encodingTypes.add(type);
+        encodingOrders.add(order);
+        encodings.add(buffer.array());
+      }
+    }
+    if (encodings.isEmpty()) {
+      throw new IllegalArgumentException("Value " + value + " can not be encoded by types " + types);
+    }
+    m_value = value;
+    m_types = encodingTypes.toArray(new Type[encodingTypes.size()]);
+    m_orders = encodingOrders.toArray(new ByteOrder[encodingOrders.size()]);
+    m_patterns = new PatternSet(encodings.toArray(new byte[encodings.size()][]));
+
+    for (int group = 0; group < m_words.length; ++group) {
+      m_words[group] = new long[0];
+      m_ids[group] = new int[0];
+    }
+    for (int i = 0; i < m_types.length; ++i) {
+      final int group = Integer.numberOfTrailingZeros(m_types[i].size);
+      final int count = m_words[group].length;
+      m_words[group] = Arrays.copyOf(m_words[group], count + 1);
+      m_ids[group] = Arrays.copyOf(m_ids[group], count + 1);
+      long word = 0;
+      for (final byte b : encodings.get(i)) {
+        word = word << 8 | b & 0xFF;
+      }
+      m_words[group][count] = word;
+      m_ids[group][count] = i;
+      m_filters[group][(int)(word >>> 6) & 1023] |= 1L << word;
+    }
+  }
+
+  /**
+   * Returns the searched number.
+   *
+   * @return Number, passed to constructor
+   */
+  public Number getValue() { return m_value; }
+
+  /**
+   * Returns count of searched encodings of number.
+   *
+   * @return Count of encodings, always positive
+   */
+  public int getEncodingCount() { return m_types.length; }
+
+  /**
+   * Returns type of encoding.
+   *
+   * @param index Index of encoding in range {@code [0; getEncodingCount())}
+   *
+   * @return Type of encoding
+   */
+  public Type getType(int index) { return m_types[index]; }
+
+  /**
+   * Returns byte order of encoding.
+   *
+   * @param index Index of encoding in range {@code [0; getEncodingCount())}
+   *
+   * @return Byte order of encoding
+   */
+  public ByteOrder getOrder(int index) { return m_orders[index]; }
+
+  /**
+   * Returns bytes of encoding.
+   *
+   * @param index Index of encoding in range {@code [0; getEncodingCount())}
+   *
+   * @return Copy of bytes of encoding
+   */
+  public byte[] getEncoding(int index) { return m_patterns.getPattern(index); }
+
+  /**
+   * Returns encodings, compiled into one automaton. Index of pattern in set
+   * is index of encoding.
+   *
+   * @return Set of encodings
+   */
+  PatternSet getPatterns() { return m_patterns; }
+
+  /**
+   * Checks encodings at offsets of data, that are aligned to size of their type.
+   *
+   * @param window Big-endian buffer with data. Its start must be aligned to {@link #MAX_SIZE}
+   * @param from Index of the first checked offset in the buffer, inclusive
+   * @param to Index of the last checked offset in the buffer, exclusive
+   * @param end Index of the end of data in the buffer. Encodings must end before it
+   * @param offset Offset of the first byte of buffer in data
+   * @param listener Receiver of found encodings
+   *
+   * @return Count of found encodings
+   */
+  long scanAligned(ByteBuffer window, int from, int to, int end, long offset, IValueMatchListener listener)
+  {
+    long found = 0;
+    for (int group = 0; group < m_words.length; ++group) {
+      if (m_words[group].length == 0) {
+        continue;
+      }
+      final long[] filter = m_filters[group];
+      final int size = 1 << group;
+      final int last = Math.min(to, end - size + 1);
+      // Round up to the aligned offset
+      final int start = (from + size - 1) & -size;
+      switch (group) {
+        case 0:
+          for (int i = start; i < last; ++i) {
+            final int word = window.get(i) & 0xFF;
+            if ((filter[word >>> 6] & 1L << word) != 0) {
+              found += report(group, word, offset + i, listener);
+            }
+          }
+          break;
+        case 1:
+          for (int i = start; i < last; i += 2) {
+            final int word = window.getShort(i) & 0xFFFF;
+            if ((filter[word >>> 6] & 1L << word) != 0) {
+              found += report(group, word, offset + i, listener);
+            }
+          }
+          break;
+        case 2:
+          for (int i = start; i < last; i += 4) {
+            final int word = window.getInt(i);
+            if ((filter[(word >>> 6) & 1023] & 1L << word) != 0) {
+              found += report(group, word & 0xFFFFFFFFL, offset + i, listener);
+            }
+          }
+          break;
+        default:
+          for (int i = start; i < last; i += 8) {
+            final long word = window.getLong(i);
+            if ((filter[(int)(word >>> 6) & 1023] & 1L << word) != 0) {
+              found += report(group, word, offset + i, listener);
+            }
+          }
+          break;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Reports all encodings of the group, that are equal to the word.
+   *
+   * @return Count of reported encodings
+   */
+  private int report(int group, long word, long offset, IValueMatchListener listener)
+  {
+    final long[] words = m_words[group];
+    final int[] ids = m_ids[group];
+    int found = 0;
+    for (int k = 0; k < words.length; ++k) {
+      if (words[k] == word) {
+        listener.valueFound(offset, m_types[ids[k]], m_orders[ids[k]]);
+        ++found;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Converts number to {@code long}, if it is integral.
+   *
+   * @return Value of number or {@code null}, if number has fractional part
+   *         or does not fit into 64 bits as signed or unsigned number
+   */
+  private static Long toIntegral(Number value)
+  {
+    if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+      return value.longValue();
+    }
+    if (value instanceof BigInteger) {
+      final BigInteger big = (BigInteger)value;
+      return big.bitLength() <= (big.signum() < 0 ? 63 : 64) ? Long.valueOf(big.longValue()) : null;
+    }
+    if (value instanceof BigDecimal) {
+      try {
+        return toIntegral(((BigDecimal)value).toBigIntegerExact());
+      } catch (ArithmeticException ex) {
+        return null;
+      }
+    }
+    final double d = value.doubleValue();
+    if (d != Math.rint(d) || Double.isInfinite(d) || Math.abs(d) >= 0x1p63) {
+      return null;
+    }
+    return (long)d;
+  }
+
+  /**
+   * Checks, that number fits into integer of specified size as signed or unsigned number.
+   */
+  private static boolean fits(long value, int size)
+  {
+    if (size == 8) {
+      return true;
+    }
+    final int bits = 8 * size;
+    return value >= -(1L << (bits - 1)) && value < 1L << bits;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + m_value + ", " + m_types.length + " encodings]";
+  }
+}